@@ -0,0 +1,159 @@
+#!/usr/bin/env bash
+# Menjalankan toko online sebagai beberapa proses di satu mesin Linux:
+# beberapa shard dan satu router, semuanya pada port loopback.
+#
+#   ./cluster.sh start [jumlah-shard]   kompilasi lalu jalankan shard dan router (default 2 shard)
+#   ./cluster.sh stop                   hentikan semua proses yang dijalankan oleh start
+#   ./cluster.sh test                   jalankan uji multi-proses dengan 2 shard lalu hentikan
+#
+# ROUTER_PORT mengatur port router (default 7000); shard memakai port-port berikutnya.
+# ROUTER_OPTS diteruskan ke JVM router, misalnya -Drouter.readTimeoutMillis=1000.
+# Kelas hasil kompilasi, log, dan daftar PID disimpan di CLUSTER_DIR (default /tmp/shop-cluster).
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")" && pwd)"
+WORK="${CLUSTER_DIR:-${TMPDIR:-/tmp}/shop-cluster}"
+ROUTER_PORT="${ROUTER_PORT:-7000}"
+ROUTER_OPTS="${ROUTER_OPTS:-}"
+CLASSES="$WORK/classes"
+PIDS="$WORK/pids"
+
+compile() {
+    mkdir -p "$CLASSES"
+    javac -d "$CLASSES" "$ROOT/labpbosem3oop/Main.java"
+}
+
+wait_for_port() {
+    for _ in $(seq 100); do
+        if (exec 9<>"/dev/tcp/127.0.0.1/$1") 2>/dev/null; then
+            return 0
+        fi
+        sleep 0.1
+    done
+    echo "Port $1 did not open; see the logs in $WORK" >&2
+    return 1
+}
+
+shard_pid() {
+    awk -v name="shard-$1" '$2 == name { print $1 }' "$PIDS"
+}
+
+start() {
+    local shards="${1:-2}"
+    stop >/dev/null
+    compile
+    local ports=""
+    for i in $(seq "$shards"); do
+        local port=$((ROUTER_PORT + i))
+        java -cp "$CLASSES" Main shard "$port" >"$WORK/shard-$i.log" 2>&1 &
+        echo "$! shard-$i" >>"$PIDS"
+        ports="${ports:+$ports,}$port"
+    done
+    for i in $(seq "$shards"); do
+        wait_for_port $((ROUTER_PORT + i))
+    done
+    # shellcheck disable=SC2086
+    java $ROUTER_OPTS -cp "$CLASSES" Main router "$ROUTER_PORT" "$ports" >"$WORK/router.log" 2>&1 &
+    echo "$! router" >>"$PIDS"
+    wait_for_port "$ROUTER_PORT"
+    echo "Router listening on 127.0.0.1:$ROUTER_PORT for shards $ports (logs in $WORK)"
+}
+
+stop() {
+    if [ -f "$PIDS" ]; then
+        while read -r pid name; do
+            kill -CONT "$pid" 2>/dev/null || true
+            kill "$pid" 2>/dev/null && echo "Stopped $name ($pid)"
+        done <"$PIDS"
+        rm -f "$PIDS"
+    fi
+    return 0
+}
+
+# Mengirim satu baris ke router melalui file descriptor tertentu dan menyimpan balasannya di REPLY.
+request() {
+    printf '%s\n' "$2" >&"$1"
+    IFS= read -r -t 15 REPLY <&"$1" || REPLY="(no reply)"
+}
+
+failures=0
+
+check() {
+    case "$REPLY" in
+        "$2"*) echo "ok   - $1" ;;
+        *) echo "FAIL - $1: $REPLY"; failures=$((failures + 1)) ;;
+    esac
+}
+
+run_test() {
+    ROUTER_OPTS="-Drouter.readTimeoutMillis=1000 $ROUTER_OPTS"
+    trap stop EXIT
+    start 2
+    exec 3<>"/dev/tcp/127.0.0.1/$ROUTER_PORT"
+    exec 4<>"/dev/tcp/127.0.0.1/$ROUTER_PORT"
+
+    request 3 "ADD_TO_CART user1 001"; check "cart command without a session is rejected" "ERR"
+    request 3 "ADD_ITEM 999 Hacked 0.01"; check "catalog write without a session is rejected" "ERR"
+    request 3 "LOGIN user1 wrong"; check "wrong password is rejected" "ERR"
+
+    request 3 "LOGIN user1 userpassword"; check "user1 logs in" "OK "
+    local user1="${REPLY#OK }"
+    request 3 "LOGIN user2 userpassword2"; check "user2 logs in" "OK "
+    local user2="${REPLY#OK }"
+    request 3 "ADMIN_LOGIN admin1 adminpassword"; check "admin1 logs in" "OK "
+    local admin="${REPLY#OK }"
+
+    request 3 "ADD_ITEM $user1 998 Hacked 0.01"; check "regular session cannot write the catalog" "ERR"
+    request 3 "ADD_TO_CART $user1 001"; check "user1 adds an item to the cart" "OK"
+    request 3 "CHECKOUT $user1 QRIS"; check "user1 checks out" "OK "
+
+    request 3 "ADD_ITEM $admin 900 Topi 50"; check "admin adds an item on every shard" "OK"
+    request 3 "ITEMS $user1"; check "first catalog read sees the new item" "OK "
+    [[ "$REPLY" == *Topi* ]] || { echo "FAIL - new item missing from the first read"; failures=$((failures + 1)); }
+    request 3 "ITEMS $user1"; check "second catalog read sees the new item" "OK "
+    [[ "$REPLY" == *Topi* ]] || { echo "FAIL - new item missing from the second read"; failures=$((failures + 1)); }
+
+    # user1 dipetakan ke shard pertama dan user2 ke shard kedua (hash username modulo 2).
+    local stalled
+    stalled="$(shard_pid 1)"
+    kill -STOP "$stalled"
+    printf '%s\n' "ADD_ITEM $admin 901 Syal 30" >&3
+    sleep 0.2
+    local started=$SECONDS
+    request 4 "ADD_TO_CART $user2 001"; check "user2 is served while the other shard is stalled" "OK"
+    if [ $((SECONDS - started)) -gt 1 ]; then
+        echo "FAIL - user2 waited $((SECONDS - started)) s behind the stalled shard"
+        failures=$((failures + 1))
+    fi
+    IFS= read -r -t 15 REPLY <&3 || REPLY="(no reply)"
+    check "catalog write to the stalled shard times out and is queued" "ERR"
+    kill -CONT "$stalled"
+
+    request 3 "ITEMS $user1"; local first="$REPLY"
+    request 3 "ITEMS $user1"; local second="$REPLY"
+    local counts
+    counts="$(grep -o Syal <<<"$first" | wc -l) $(grep -o Syal <<<"$second" | wc -l)"
+    if [ "$counts" = "1 1" ]; then
+        echo "ok   - queued write reaches the resumed shard exactly once"
+    else
+        echo "FAIL - queued item count per shard after resuming: $counts"
+        failures=$((failures + 1))
+    fi
+
+    request 3 "LOGOUT $user1"; check "user1 logs out" "OK"
+    request 3 "CHECKOUT $user1 QRIS"; check "logged-out token is rejected" "ERR"
+
+    exec 3>&- 4>&-
+    if [ "$failures" -gt 0 ]; then
+        echo "$failures check(s) failed"
+        return 1
+    fi
+    echo "All checks passed"
+}
+
+case "${1:-}" in
+    start) shift; start "$@" ;;
+    stop) stop ;;
+    test) run_test ;;
+    *) echo "Usage: $0 start [shards] | stop | test" >&2; exit 2 ;;
+esac
@@ -1,4 +1,15 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.SecureRandom;
+import java.time.*;
+import java.time.format.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.regex.*;
 
 /**
  * interface yang merepresentasikan sebuah metode pembayaran.
@@ -80,15 +91,54 @@ class UnknownPayment implements PaymentMethod {
 public class Main {
     /**
      * Metode utama untuk menjalankan sistem toko online.
-     * Membuat instansi dari sistem aplikasi toko online dan menjalankannya.
+     * Tanpa argumen, aplikasi berjalan interaktif seperti biasa. Dengan argumen
+     * "shard &lt;port&gt;" proses berjalan sebagai shard, dan dengan argumen
+     * "router &lt;port&gt; &lt;port-shard,...&gt;" proses berjalan sebagai router. Argumen
+     * "standby &lt;port&gt;" menjalankan proses cadangan, dan "--standby &lt;port&gt;"
+     * membuat aplikasi interaktif mereplikasi setiap perubahan ke proses cadangan tersebut.
+     * Argumen "--checkpoint-dir &lt;direktori&gt;" memulihkan data dari checkpoint terakhir
+     * lalu menyimpan checkpoint secara berkala ke direktori tersebut.
      *
-     * @param args Argumen baris perintah (tidak digunakan dalam implementasi ini).
+     * @param args Argumen baris perintah untuk memilih mode proses.
+     * @throws IOException Jika socket shard atau router gagal dibuka.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 2 && args[0].equals("shard")) {
+            new ShopShard(Integer.parseInt(args[1])).serve();
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("router")) {
+            new ShardRouter(ShardRouter.parsePorts(args[2])).serve(Integer.parseInt(args[1]));
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("standby")) {
+            new StandbyServer(Integer.parseInt(args[1])).serve();
+            return;
+        }
+        String checkpointDir = optionValue(args, "--checkpoint-dir");
+        String standbyPort = optionValue(args, "--standby");
+        if (checkpointDir != null) {
+            Checkpointer.recover(Paths.get(checkpointDir));
+        }
         OnlineShoppingAppSystem appSystem = new OnlineShoppingAppSystem();
+        if (standbyPort != null) {
+            ReplicationPublisher.start(Integer.parseInt(standbyPort));
+        }
+        if (checkpointDir != null) {
+            Checkpointer.start(Paths.get(checkpointDir));
+        }
          // Menjalankan sistem aplikasi toko online
         appSystem.run();
     }
+
+    private static String optionValue(String[] args, String option) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
 }
 
 abstract class Driver {
@@ -160,7 +210,7 @@ class AdminDriver extends Driver {
         boolean isAdminMenuActive = true;
         while (isAdminMenuActive) {
             printMenuHeader("Admin");
-            String[] options = {"Add Item", "Remove Item", "Edit Item", "View Transactions", "Exit", "Logout"};
+            String[] options = {"Add Item", "Remove Item", "Edit Item", "View Transactions", "Manage Promotions", "View Replication Status", "View Catalog History", "Bulk Update Prices", "Exit", "Logout"};
             printMenuOptions(options);
 
             int choice = getUserChoice(scanner, options.length);
@@ -179,10 +229,22 @@ class AdminDriver extends Driver {
                     viewTransactions();
                     break;
                 case 5:
+                    managePromotions(scanner);
+                    break;
+                case 6:
+                    viewReplicationStatus();
+                    break;
+                case 7:
+                    viewCatalogHistory(scanner);
+                    break;
+                case 8:
+                    bulkUpdatePrices(scanner);
+                    break;
+                case 9:
                     System.out.println("Exiting the program. Goodbye!");
                     isAdminMenuActive = false;
                     break;
-                case 6:
+                case 10:
                     OnlineShoppingAppSystem app = new OnlineShoppingAppSystem();
                     app.run();
                     break;
@@ -219,7 +281,11 @@ class AdminDriver extends Driver {
         System.out.print("Enter Item ID to remove: ");
         String itemIdToRemove = scanner.nextLine();
 
-        ItemList.getInstance().removeItem(itemIdToRemove);
+        if (ItemList.getInstance().removeItem(itemIdToRemove)) {
+            System.out.println("Item removed successfully!");
+        } else {
+            System.out.println("Item not found with ID: " + itemIdToRemove);
+        }
     }
  /**
      * Mengedit item yang ada dalam daftar item.
@@ -232,12 +298,245 @@ class AdminDriver extends Driver {
 
         ItemList.getInstance().editItem(itemIdToEdit, scanner);
     }
+ /**
+     * Mengubah harga banyak item sekaligus berdasarkan filter nama atau rentang harga.
+     * Perubahan terlihat oleh pengguna secara bersamaan setelah semua harga baru dihitung.
+     *
+     * @param scanner Scanner untuk masukan pengguna.
+     */
+    private void bulkUpdatePrices(Scanner scanner) {
+        String[] filters = {"Name Pattern (use * as wildcard)", "Price Range"};
+        printMenuOptions(filters);
+        int filterChoice = getUserChoice(scanner, filters.length);
+
+        Predicate<Item> filter;
+        if (filterChoice == 1) {
+            System.out.print("Enter name pattern: ");
+            String pattern = scanner.nextLine();
+            Pattern namePattern = Pattern.compile(globToRegex(pattern), Pattern.CASE_INSENSITIVE);
+            filter = item -> namePattern.matcher(item.getName()).matches();
+        } else {
+            System.out.print("Enter minimum price: ");
+            double minPrice = scanner.nextDouble();
+            System.out.print("Enter maximum price: ");
+            double maxPrice = scanner.nextDouble();
+            scanner.nextLine();
+            filter = item -> item.getPrice() >= minPrice && item.getPrice() <= maxPrice;
+        }
+
+        String[] updates = {"Change by Percentage", "Set Fixed Price"};
+        printMenuOptions(updates);
+        int updateChoice = getUserChoice(scanner, updates.length);
+
+        DoubleUnaryOperator priceUpdate;
+        if (updateChoice == 1) {
+            System.out.print("Enter percentage change (e.g. 10 or -15): ");
+            double percent = scanner.nextDouble();
+            if (!(percent >= -100)) {
+                scanner.nextLine();
+                System.out.println("Percentage change must not be below -100. Prices not changed.");
+                return;
+            }
+            priceUpdate = price -> Math.round(price * (100 + percent)) / 100.0;
+        } else {
+            System.out.print("Enter new price: ");
+            double newPrice = scanner.nextDouble();
+            if (!(newPrice >= 0)) {
+                scanner.nextLine();
+                System.out.println("Price must not be negative. Prices not changed.");
+                return;
+            }
+            priceUpdate = price -> newPrice;
+        }
+        scanner.nextLine();
+
+        try {
+            int updated = ItemList.getInstance().updatePrices(filter, priceUpdate);
+            System.out.println(updated + " item(s) updated successfully!");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage() + ". Prices not changed.");
+        }
+    }
+
+    private String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : glob.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            regex.append(Pattern.quote(part));
+        }
+        return regex.toString();
+    }
  /**
      * Melihat daftar transaksi.
      */
     private void viewTransactions() {
         TransactionList.getInstance().viewTransactions();
     }
+ /**
+     * Menampilkan status replikasi ke proses cadangan.
+     */
+    private void viewReplicationStatus() {
+        ReplicationPublisher publisher = ReplicationPublisher.getInstance();
+        if (publisher == null) {
+            System.out.println("Replication is not enabled.");
+            return;
+        }
+        System.out.println("Standby connected: " + publisher.isConnected());
+        System.out.println("Unacknowledged mutations: " + publisher.getPendingCount());
+        System.out.println("Replication lag (ms): " + publisher.getLagMillis());
+    }
+ /**
+     * Menampilkan harga item atau isi katalog pada waktu tertentu.
+     *
+     * @param scanner Scanner untuk masukan pengguna.
+     */
+    private void viewCatalogHistory(Scanner scanner) {
+        printMenuHeader("Catalog History");
+        String[] options = {"Item Price at Time", "Full Catalog at Time", "Back"};
+        printMenuOptions(options);
+
+        int choice = getUserChoice(scanner, options.length);
+        if (choice == 3) {
+            return;
+        }
+        String itemId = null;
+        if (choice == 1) {
+            System.out.print("Enter Item ID: ");
+            itemId = scanner.nextLine();
+        }
+        System.out.print("Enter time (yyyy-MM-dd HH:mm:ss): ");
+        long timestamp;
+        try {
+            timestamp = LocalDateTime.parse(scanner.nextLine(), CatalogHistory.TIME_FORMAT)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid time format.");
+            return;
+        }
+
+        if (choice == 1) {
+            Item item = CatalogHistory.getInstance().getItemAt(itemId, timestamp);
+            if (item == null) {
+                System.out.println("Item " + itemId + " was not in the catalog at that time.");
+            } else {
+                System.out.println("ID: " + item.getId() + " | Name: " + item.getName() + " | Price: " + item.getPrice());
+            }
+        } else {
+            List<Item> items = CatalogHistory.getInstance().getCatalogAt(timestamp);
+            if (items.isEmpty()) {
+                System.out.println("The catalog was empty at that time.");
+            }
+            for (Item item : items) {
+                System.out.println("ID: " + item.getId() + " | Name: " + item.getName() + " | Price: " + item.getPrice());
+            }
+        }
+    }
+ /**
+     * Mengelola daftar promosi yang berlaku saat checkout.
+     *
+     * @param scanner Scanner untuk masukan pengguna.
+     */
+    private void managePromotions(Scanner scanner) {
+        printMenuHeader("Promotion");
+        String[] options = {"Add Promotion", "View Promotions", "Clear Promotions", "Back"};
+        printMenuOptions(options);
+
+        int choice = getUserChoice(scanner, options.length);
+        switch (choice) {
+            case 1:
+                addPromotion(scanner);
+                break;
+            case 2:
+                List<Promotion> promotions = PromotionEngine.getInstance().getPromotions();
+                if (promotions.isEmpty()) {
+                    System.out.println("No active promotions.");
+                }
+                for (Promotion promotion : promotions) {
+                    System.out.println("- " + promotion.describe());
+                }
+                break;
+            case 3:
+                PromotionEngine.getInstance().clearPromotions();
+                System.out.println("All promotions cleared.");
+                break;
+            default:
+                break;
+        }
+    }
+ /**
+     * Menambahkan promosi baru berdasarkan jenis yang dipilih admin.
+     *
+     * @param scanner Scanner untuk masukan pengguna.
+     */
+    private void addPromotion(Scanner scanner) {
+        String[] types = {"Item Percentage Discount", "Item Amount Discount", "Buy N Get M Free",
+                "Payment Method Discount", "Cart Threshold Discount"};
+        printMenuOptions(types);
+        int type = getUserChoice(scanner, types.length);
+
+        Promotion promotion;
+        try {
+            promotion = readPromotion(scanner, type);
+        } catch (IllegalArgumentException e) {
+            scanner.nextLine();
+            System.out.println(e.getMessage() + ". Promotion not added.");
+            return;
+        }
+        scanner.nextLine();
+
+        PromotionEngine.getInstance().addPromotion(promotion);
+        System.out.println("Promotion added successfully!");
+    }
+ /**
+     * Membaca detail promosi sesuai jenisnya dari masukan admin.
+     *
+     * @param scanner Scanner untuk masukan pengguna.
+     * @param type    Jenis promosi yang dipilih.
+     * @return Promosi baru.
+     * @throws IllegalArgumentException Jika nilai promosi tidak valid.
+     */
+    private Promotion readPromotion(Scanner scanner, int type) {
+        Promotion promotion;
+        switch (type) {
+            case 1:
+                System.out.print("Enter Item ID: ");
+                String percentItemId = scanner.nextLine();
+                System.out.print("Enter discount percentage: ");
+                promotion = Promotion.itemPercent(percentItemId, scanner.nextDouble());
+                break;
+            case 2:
+                System.out.print("Enter Item ID: ");
+                String amountItemId = scanner.nextLine();
+                System.out.print("Enter discount amount: ");
+                promotion = Promotion.itemAmount(amountItemId, scanner.nextDouble());
+                break;
+            case 3:
+                System.out.print("Enter Item ID: ");
+                String bundleItemId = scanner.nextLine();
+                System.out.print("Enter quantity to buy (N): ");
+                int buyQuantity = scanner.nextInt();
+                System.out.print("Enter quantity free (M): ");
+                promotion = Promotion.buyGetFree(bundleItemId, buyQuantity, scanner.nextInt());
+                break;
+            case 4:
+                String[] methods = {"Bank", "COD", "QRIS"};
+                System.out.println("available payment method :");
+                printMenuOptions(methods);
+                String methodName = methods[getUserChoice(scanner, methods.length) - 1];
+                System.out.print("Enter discount percentage: ");
+                promotion = Promotion.paymentPercent(methodName, scanner.nextDouble());
+                break;
+            default:
+                System.out.print("Enter minimum cart total: ");
+                double minTotal = scanner.nextDouble();
+                System.out.print("Enter discount amount: ");
+                promotion = Promotion.cartThreshold(minTotal, scanner.nextDouble());
+                break;
+        }
+        return promotion;
+    }
 }
 /**
  * Kelas yang mewakili pengemudi dengan peran pengguna reguler dalam aplikasi toko online.
@@ -302,17 +601,7 @@ class RegularUserDriver extends Driver {
      */
     private void displayAvailableItems() {
         System.out.println("Available Items:");
-        Set<String> printedItemIds = new HashSet<>(); 
-
-        for (Item item : OnlineShoppingAppSystem.getItems()) {
-            String itemId = item.getId();
-
-            if (!printedItemIds.contains(itemId)) {
-                System.out.println("ID: " + itemId + " | Name: " + item.getName() + " | Price: " + item.getPrice());
-
-                printedItemIds.add(itemId);
-            }
-        }
+        System.out.print(CatalogListingCache.getInstance().getListing());
     }
  /**
      * Menambahkan item ke dalam keranjang belanja.
@@ -323,7 +612,32 @@ class RegularUserDriver extends Driver {
         System.out.print("Enter Item ID to add to cart: ");
         String itemIdToAdd = scanner.nextLine();
 
-        ItemList.getInstance().addItemToCart(itemIdToAdd, regularUser);
+        if (ItemList.getInstance().addItemToCart(itemIdToAdd, regularUser)) {
+            System.out.println("Item added to cart successfully!");
+            showRecommendations(itemIdToAdd);
+        } else {
+            System.out.println("Item not found with ID: " + itemIdToAdd);
+        }
+    }
+ /**
+     * Menampilkan item yang sering dibeli bersama item tertentu.
+     *
+     * @param itemId ID item yang baru ditambahkan ke keranjang.
+     */
+    private void showRecommendations(String itemId) {
+        CatalogSnapshot catalog = ItemList.getInstance().getSnapshot();
+        boolean headerPrinted = false;
+        for (String recommendedId : RecommendationIndex.getInstance().getRecommendations(itemId)) {
+            Item item = catalog.getItem(recommendedId);
+            if (item == null) {
+                continue;
+            }
+            if (!headerPrinted) {
+                System.out.println("Customers also bought:");
+                headerPrinted = true;
+            }
+            System.out.println("  ID: " + item.getId() + " | Name: " + item.getName() + " | Price: " + item.getPrice());
+        }
     }
  /**
      * Melakukan proses checkout untuk membeli item yang ada dalam keranjang belanja.
@@ -331,6 +645,7 @@ class RegularUserDriver extends Driver {
      * @param scanner Scanner untuk masukan pengguna.
      */
     private void checkout(Scanner scanner) {
+        ItemList.getInstance().refreshCart(regularUser);
         if (getCart().isEmpty()) {
             System.out.println("Your cart is empty. Cannot proceed to checkout.");
             return;
@@ -372,10 +687,21 @@ class RegularUserDriver extends Driver {
                 break;
         }
 
+        double discount = PromotionEngine.getInstance().calculateDiscount(getCart(), paymentMethod);
+        if (discount > 0) {
+            totalPrice -= discount;
+            System.out.println("Promotion Discount: " + discount);
+            System.out.println("Total After Discount: " + totalPrice);
+        }
+
         Transaction transaction = new Transaction(generateTransactionId(), new ArrayList<>(getCart()), totalPrice, paymentMethod);
-        TransactionList.getInstance().addTransaction(transaction);
+        try {
+            CheckoutQueue.getInstance().submit(regularUser, transaction).join();
+        } catch (CompletionException e) {
+            System.out.println("Checkout failed: " + e.getCause().getMessage() + ". Your cart was kept.");
+            return;
+        }
 
-        getCart().clear();
         System.out.println("Checkout successful! Thank you for shopping.");
     }
 
@@ -421,9 +747,18 @@ class OnlineShoppingAppSystem {
     private User loggedInUser;
  /**
      * Konstruktor untuk menginisialisasi sistem toko online dengan item dan pengguna awal.
+     * Item awal hanya ditambahkan jika katalog masih kosong, sehingga katalog yang
+     * diterima standby saat mengambil alih (atau dipulihkan dari checkpoint) tidak
+     * ditimpa atau diduplikasi. Cache tampilan katalog, riwayat katalog, dan indeks
+     * rekomendasi didaftarkan sebagai listener di sini.
      */
     public OnlineShoppingAppSystem() {
-        initializeItems();
+        itemList.addListener(CatalogListingCache.getInstance());
+        itemList.addListener(CatalogHistory.getInstance());
+        TransactionList.getInstance().addListener(RecommendationIndex.getInstance());
+        if (itemList.getItems().isEmpty()) {
+            initializeItems();
+        }
         initializeUsers();
     }
 /**
@@ -482,8 +817,8 @@ class OnlineShoppingAppSystem {
         System.out.print("Enter admin password: ");
         String password = scanner.nextLine();
 
-        User user = UserList.getInstance().getUser(username);
-        if (user != null && user instanceof Admin && user.getPassword().equals(password)) {
+        User user = UserList.getInstance().authenticate(username, password, UserList.ROLE_ADMIN);
+        if (user != null) {
             loggedInUser = user;
             System.out.println("Admin login successful!");
             return true;
@@ -499,8 +834,8 @@ class OnlineShoppingAppSystem {
         System.out.print("Enter regular user password: ");
         String password = scanner.nextLine();
 
-        User user = UserList.getInstance().getUser(username);
-        if (user != null && user instanceof RegularUser && user.getPassword().equals(password)) {
+        User user = UserList.getInstance().authenticate(username, password, UserList.ROLE_REGULAR);
+        if (user != null) {
             loggedInUser = user;
             System.out.println("Regular user login successful!");
             return true;
@@ -510,7 +845,7 @@ class OnlineShoppingAppSystem {
         }
     }
 
-    private void initializeItems() {
+    private static void initializeItems() {
         Item item1 = new Item("001", "Kemeja", 150.0);
         Item item2 = new Item("002", "Celana", 120.0);
         Item item3 = new Item("003", "Sepatu", 200.0);
@@ -520,7 +855,7 @@ class OnlineShoppingAppSystem {
         itemList.addItem(item3);
     }
 
-    private void initializeUsers() {
+    static void initializeUsers() {
         Admin admin1 = new Admin("admin1", "adminpassword");
         User user1 = new RegularUser("user1", "userpassword");
         User user2 = new RegularUser("user2", "userpassword2");
@@ -570,6 +905,28 @@ abstract class User {
     public String getPassword() {
         return password;
     }
+/**
+     * Dua pengguna dianggap sama jika jenis dan username-nya sama, sehingga
+     * keranjang belanja tetap ditemukan walaupun objek pengguna dibuat ulang.
+     *
+     * @param other Objek yang dibandingkan.
+     * @return true jika objek merupakan pengguna yang sama.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        return username.equals(((User) other).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
 }
 /**
  * Kelas yang merepresentasikan pengguna dengan peran admin dalam aplikasi toko online.
@@ -621,9 +978,9 @@ class RegularUser extends User {
  * Kelas yang merepresentasikan item dalam aplikasi toko online.
  */
 class Item {
-    private String id;
-    private String name;
-    private double price;
+    private final String id;
+    private final String name;
+    private final double price;
  /**
      * Konstruktor untuk membuat instance item dengan ID, nama, dan harga.
      *
@@ -656,258 +1013,3211 @@ class Item {
     public double getPrice() {
         return price;
     }
-    /**
-     * Mengubah nama dari item.
+/**
+     * Membuat salinan item dengan nama dan harga baru.
+     * Item bersifat immutable agar snapshot katalog yang sedang dibaca tidak ikut berubah.
      *
-     * @param name Nama baru untuk item.
+     * @param name  Nama baru untuk item.
+     * @param price Harga baru untuk item.
+     * @return Item baru dengan ID yang sama.
+     */
+    public Item withDetails(String name, double price) {
+        return new Item(id, name, price);
+    }
+}
+/**
+ * Snapshot katalog yang immutable dan memiliki nomor versi.
+ * Pembaca mendapatkan snapshot tanpa lock; setiap perubahan katalog menerbitkan snapshot baru.
+ */
+class CatalogSnapshot {
+    private final long version;
+    private final List<Item> items;
+    private final Map<String, Item> itemsById;
+/**
+     * Konstruktor untuk membuat snapshot katalog dari daftar item.
+     *
+     * @param version Nomor versi snapshot.
+     * @param items   Daftar item pada versi ini.
      */
+    public CatalogSnapshot(long version, List<Item> items) {
+        this.version = version;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        Map<String, Item> index = new HashMap<>();
+        for (Item item : this.items) {
+            index.putIfAbsent(item.getId(), item);
+        }
+        this.itemsById = index;
+    }
 
-    public void setName(String name) {
-        this.name = name;
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Item> getItems() {
+        return items;
     }
 /**
-     * Mengubah harga dari item.
+     * Mendapatkan item pertama dengan ID tertentu pada snapshot ini.
      *
-     * @param price Harga baru untuk item.
+     * @param itemId ID item yang dicari.
+     * @return Item yang sesuai, atau null jika tidak ada.
      */
-    public void setPrice(double price) {
-        this.price = price;
+    public Item getItem(String itemId) {
+        return itemsById.get(itemId);
     }
 }
 /**
- * Kelas yang menyimpan daftar item dan keranjang belanja pengguna dalam aplikasi toko online.
+ * Interface untuk menerima event perubahan katalog dari ItemList.
  */
-class ItemList {
-    private static ItemList instance = new ItemList();
-    private List<Item> items;
-    private Map<RegularUser, List<Item>> cartMap;
-
-    private ItemList() {
-        items = new ArrayList<>();
-        cartMap = new HashMap<>();
+interface ItemListListener {
+    /**
+     * Dipanggil setelah item baru ditambahkan ke katalog.
+     *
+     * @param item Item yang ditambahkan.
+     */
+    void itemAdded(Item item);
+    /**
+     * Dipanggil setelah semua item dengan ID tertentu dihapus dari katalog.
+     *
+     * @param itemId ID item yang dihapus.
+     */
+    void itemRemoved(String itemId);
+    /**
+     * Dipanggil setelah nama atau harga item diubah.
+     *
+     * @param item Item dengan detail terbaru.
+     */
+    void itemEdited(Item item);
+    /**
+     * Dipanggil sekali setelah banyak item diubah bersamaan dalam satu snapshot,
+     * misalnya oleh perubahan harga massal. Implementasi bawaan memanggil itemEdited untuk setiap item.
+     *
+     * @param items Item-item dengan detail terbaru.
+     */
+    default void itemsEdited(List<Item> items) {
+        for (Item item : items) {
+            itemEdited(item);
+        }
     }
- /**
-     * Mengembalikan instance tunggal dari kelas ItemList (Singleton).
+    /**
+     * Dipanggil setelah item ditambahkan ke keranjang belanja pengguna.
      *
-     * @return Instance tunggal dari kelas ItemList.
+     * @param user Pengguna pemilik keranjang.
+     * @param item Item yang ditambahkan.
      */
-    public static ItemList getInstance() {
-        return instance;
+    default void cartItemAdded(RegularUser user, Item item) {
     }
-// method lainya sudah dijelaskan diatas
-    public void addItem(Item item) {
-        items.add(item);
+    /**
+     * Dipanggil setelah keranjang belanja pengguna dikosongkan.
+     *
+     * @param user Pengguna pemilik keranjang.
+     */
+    default void cartCleared(RegularUser user) {
     }
+}
+/**
+ * Interface untuk menerima event transaksi baru dari TransactionList.
+ */
+interface TransactionListener {
+    /**
+     * Dipanggil setelah transaksi ditambahkan ke daftar transaksi.
+     *
+     * @param transaction Transaksi yang ditambahkan.
+     */
+    void transactionAdded(Transaction transaction);
+}
+/**
+ * Kelas yang menyimpan tampilan daftar item yang sudah dirender.
+ * Setiap baris hanya diformat ulang ketika item tersebut berubah, sehingga
+ * tampilan berulang cukup menyalin buffer yang sudah ada.
+ */
+class CatalogListingCache implements ItemListListener {
+    private static CatalogListingCache instance = new CatalogListingCache();
+    private Map<String, String> rows;
+    private StringBuilder listing;
+    private String rendered;
 
-    public void removeItem(String itemId) {
-        items.removeIf(item -> item.getId().equals(itemId));
-        System.out.println("Item removed successfully!");
+    private CatalogListingCache() {
+        rows = new LinkedHashMap<>();
+        listing = new StringBuilder();
     }
-
-    public void editItem(String itemId, Scanner scanner) {
-        Item itemToEdit = getItemById(itemId);
-        if (itemToEdit != null) {
-            System.out.println("Editing Item - Current Details:");
-            System.out.println("ID: " + itemToEdit.getId() + " | Name: " + itemToEdit.getName() + " | Price: " + itemToEdit.getPrice());
-
-            System.out.print("Enter new Item Name (press Enter to keep the current name): ");
-            String newName = scanner.nextLine();
-            if (!newName.isEmpty()) {
-                itemToEdit.setName(newName);
+/**
+     * Mengembalikan instance tunggal dari kelas CatalogListingCache (Singleton).
+     *
+     * @return Instance tunggal dari kelas CatalogListingCache.
+     */
+    public static CatalogListingCache getInstance() {
+        return instance;
+    }
+/**
+     * Mendapatkan daftar item yang tersedia dalam bentuk teks siap cetak.
+     *
+     * @return Daftar item, satu baris per ID item.
+     */
+    public synchronized String getListing() {
+        if (listing == null) {
+            listing = new StringBuilder();
+            for (String row : rows.values()) {
+                listing.append(row);
             }
+        }
+        if (rendered == null) {
+            rendered = listing.toString();
+        }
+        return rendered;
+    }
 
-            System.out.print("Enter new Item Price (press Enter to keep the current price): ");
-            String newPriceInput = scanner.nextLine();
-            if (!newPriceInput.isEmpty()) {
-                try {
-                    double newPrice = Double.parseDouble(newPriceInput);
-                    itemToEdit.setPrice(newPrice);
-                } catch (NumberFormatException e) {
-                    System.out.println("Invalid price format. Item price remains unchanged.");
-                }
-            }
+    @Override
+    public synchronized void itemAdded(Item item) {
+        if (rows.containsKey(item.getId())) {
+            return;
+        }
+        String row = renderRow(item);
+        rows.put(item.getId(), row);
+        if (listing != null) {
+            listing.append(row);
+        }
+        rendered = null;
+    }
 
-            System.out.println("Item edited successfully!");
-        } else {
-            System.out.println("Item not found with ID: " + itemId);
+    @Override
+    public synchronized void itemRemoved(String itemId) {
+        if (rows.remove(itemId) != null) {
+            invalidate();
         }
     }
 
-    public void addItemToCart(String itemId, RegularUser user) {
-        Item itemToAdd = getItemById(itemId);
-        if (itemToAdd != null) {
-            cartMap.computeIfAbsent(user, k -> new ArrayList<>()).add(itemToAdd);
-            System.out.println("Item added to cart successfully!");
-        } else {
-            System.out.println("Item not found with ID: " + itemId);
+    @Override
+    public synchronized void itemEdited(Item item) {
+        if (rows.containsKey(item.getId())) {
+            rows.put(item.getId(), renderRow(item));
+            invalidate();
         }
     }
 
-    public List<Item> getItems() {
-        return items;
+    @Override
+    public synchronized void itemsEdited(List<Item> items) {
+        for (Item item : items) {
+            if (rows.containsKey(item.getId())) {
+                rows.put(item.getId(), renderRow(item));
+            }
+        }
+        invalidate();
     }
 
-    public List<Item> getItemsInCart(RegularUser user) {
-        return cartMap.getOrDefault(user, Collections.emptyList());
+    private void invalidate() {
+        listing = null;
+        rendered = null;
     }
 
-    private Item getItemById(String itemId) {
-        return items.stream().filter(item -> item.getId().equals(itemId)).findFirst().orElse(null);
+    private String renderRow(Item item) {
+        return "ID: " + item.getId() + " | Name: " + item.getName() + " | Price: " + item.getPrice() + System.lineSeparator();
     }
 }
 /**
- * Kelas yang mengelola daftar pengguna dalam aplikasi toko online.
+ * Kelas yang menyimpan riwayat versi katalog (MVCC) sehingga harga item dan isi
+ * katalog pada waktu tertentu dapat dicari melalui indeks per item.
+ * Versi setiap item disimpan dalam array paralel yang terurut menurut waktu, dan
+ * versi yang lebih tua dari masa retensi (system property catalog.historyRetentionMillis) dihapus.
  */
-class UserList {
-    private static UserList instance = new UserList();
-    private Map<String, User> users;
+class CatalogHistory implements ItemListListener {
+    static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static CatalogHistory instance = new CatalogHistory(Long.getLong("catalog.historyRetentionMillis", TimeUnit.DAYS.toMillis(30)));
+    private final long retentionMillis;
+    private final Map<String, ItemHistory> historyById;
 
-    private UserList() {
-        users = new HashMap<>();
+    private CatalogHistory(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+        this.historyById = new LinkedHashMap<>();
     }
 /**
-     * Mengembalikan instance tunggal dari kelas UserList (Singleton).
+     * Mengembalikan instance tunggal dari kelas CatalogHistory (Singleton).
      *
-     * @return Instance tunggal dari kelas UserList.
+     * @return Instance tunggal dari kelas CatalogHistory.
      */
-    public static UserList getInstance() {
+    public static CatalogHistory getInstance() {
         return instance;
     }
-
-    public void addUser(User user) {
-        users.put(user.getUsername(), user);
-    }
- /**
-     * Mendapatkan pengguna berdasarkan username-nya.
+/**
+     * Mendapatkan item seperti yang tercatat di katalog pada waktu tertentu.
      *
-     * @param username Username dari pengguna yang dicari.
-     * @return Pengguna yang sesuai dengan username yang diberikan.
+     * @param itemId    ID item yang dicari.
+     * @param timestamp Waktu dalam milidetik sejak epoch.
+     * @return Item pada waktu tersebut, atau null jika item belum ada, sudah dihapus, atau riwayatnya sudah dibuang.
      */
-    public User getUser(String username) {
-        return users.get(username);
+    public synchronized Item getItemAt(String itemId, long timestamp) {
+        ItemHistory history = historyById.get(itemId);
+        if (history == null) {
+            return null;
+        }
+        int index = history.floorIndex(timestamp);
+        if (index < 0 || history.names[index] == null) {
+            return null;
+        }
+        return new Item(itemId, history.names[index], history.prices[index]);
     }
-}
-/**
- * Kelas yang merepresentasikan transaksi dalam aplikasi toko online.
- */
-class Transaction {
-    private String id;
-    private List<Item> items;
-    private double totalPrice;
-    private PaymentMethod paymentMethod;
 /**
-     * Konstruktor untuk membuat instance transaksi dengan ID, daftar item, total harga, dan metode pembayaran.
+     * Mendapatkan seluruh isi katalog pada waktu tertentu.
+     *
+     * @param timestamp Waktu dalam milidetik sejak epoch.
+     * @return Daftar item yang ada di katalog pada waktu tersebut.
      */
-    public Transaction(String id, List<Item> items, double totalPrice, PaymentMethod paymentMethod) {
-        this.id = id;
-        this.items = items;
-        this.totalPrice = totalPrice;
-        this.paymentMethod = paymentMethod;
+    public synchronized List<Item> getCatalogAt(long timestamp) {
+        List<Item> items = new ArrayList<>();
+        for (String itemId : historyById.keySet()) {
+            Item item = getItemAt(itemId, timestamp);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public synchronized void itemAdded(Item item) {
+        ItemHistory history = historyById.get(item.getId());
+        if (history != null && history.size > 0 && history.names[history.size - 1] != null) {
+            return;
+        }
+        record(item.getId(), item.getName(), item.getPrice());
+    }
+
+    @Override
+    public synchronized void itemRemoved(String itemId) {
+        record(itemId, null, 0);
+    }
+
+    @Override
+    public synchronized void itemEdited(Item item) {
+        record(item.getId(), item.getName(), item.getPrice());
     }
 /**
-     * Mendapatkan ID dari transaksi.
+     * Mencatat perubahan massal dengan satu waktu yang sama untuk semua item,
+     * sehingga kueri pada waktu mana pun melihat semua perubahan atau tidak sama sekali.
      */
-    public String getId() {
-        return id;
+    @Override
+    public synchronized void itemsEdited(List<Item> items) {
+        long now = System.currentTimeMillis();
+        for (Item item : items) {
+            record(item.getId(), item.getName(), item.getPrice(), now);
+        }
     }
 
-    public List<Item> getItems() {
-        return items;
+    private void record(String itemId, String name, double price) {
+        record(itemId, name, price, System.currentTimeMillis());
     }
-
-    public double getTotalPrice() {
-        return totalPrice;
+/**
+     * Menambahkan versi baru untuk item. Nama null menandakan item dihapus.
+     * Perubahan pada milidetik yang sama dengan versi terakhir menimpa versi tersebut.
+     */
+    private void record(String itemId, String name, double price, long now) {
+        ItemHistory history = historyById.computeIfAbsent(itemId, k -> new ItemHistory());
+        history.append(now, name, price);
+        history.prune(now - retentionMillis);
+        if (history.size == 1 && history.names[0] == null && history.timestamps[0] <= now - retentionMillis) {
+            historyById.remove(itemId);
+        }
     }
 /**
-     * Mendapatkan metode pembayaran yang digunakan dalam transaksi.
-     *
-     * @return Metode pembayaran dalam transaksi.
+     * Riwayat satu item: waktu, nama, dan harga setiap versi disimpan dalam array paralel
+     * yang terurut menurut waktu sehingga pencarian cukup dengan binary search.
      */
-    public PaymentMethod getPaymentMethod() {
-        return paymentMethod;
+    private static class ItemHistory {
+        private long[] timestamps = new long[4];
+        private double[] prices = new double[4];
+        private String[] names = new String[4];
+        private int size;
+
+        void append(long timestamp, String name, double price) {
+            int index = size;
+            if (size > 0 && timestamp <= timestamps[size - 1]) {
+                index = size - 1;
+                timestamp = timestamps[index];
+            } else if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            timestamps[index] = timestamp;
+            prices[index] = price;
+            names[index] = name;
+            size = index + 1;
+        }
+
+        int floorIndex(long timestamp) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+/**
+         * Membuang versi yang lebih tua dari batas retensi. Versi terakhir sebelum
+         * batas tetap disimpan agar kueri tepat pada batas tetap benar.
+         */
+        void prune(long cutoff) {
+            int boundary = floorIndex(cutoff);
+            if (boundary <= 0) {
+                return;
+            }
+            int remaining = size - boundary;
+            System.arraycopy(timestamps, boundary, timestamps, 0, remaining);
+            System.arraycopy(prices, boundary, prices, 0, remaining);
+            System.arraycopy(names, boundary, names, 0, remaining);
+            Arrays.fill(names, remaining, size, null);
+            size = remaining;
+        }
     }
 }
 /**
- * Kelas yang mengelola daftar transaksi dalam aplikasi toko online.
+ * Kelas yang menyimpan daftar item dan keranjang belanja pengguna dalam aplikasi toko online.
  */
-class TransactionList {
-    private static TransactionList instance = new TransactionList();
-    private List<Transaction> transactions;
-    private Set<String> printedItemIds; 
+class ItemList {
+    private static ItemList instance = new ItemList();
+    private volatile CatalogSnapshot snapshot;
+    private Map<RegularUser, List<Item>> cartMap;
+    private List<ItemListListener> listeners;
 
-    private TransactionList() {
-        transactions = new ArrayList<>();
-        printedItemIds = new HashSet<>();
+    private ItemList() {
+        snapshot = new CatalogSnapshot(0, Collections.emptyList());
+        cartMap = new HashMap<>();
+        listeners = new ArrayList<>();
     }
-/**
-     * Mengembalikan instance tunggal dari kelas TransactionList (Singleton).
+ /**
+     * Mengembalikan instance tunggal dari kelas ItemList (Singleton).
      *
-     * @return Instance tunggal dari kelas TransactionList.
+     * @return Instance tunggal dari kelas ItemList.
      */
-    public static TransactionList getInstance() {
+    public static ItemList getInstance() {
         return instance;
     }
+// method lainya sudah dijelaskan diatas
+    public synchronized void addItem(Item item) {
+        List<Item> items = new ArrayList<>(snapshot.getItems());
+        items.add(item);
+        publish(items);
+        for (ItemListListener listener : listeners) {
+            listener.itemAdded(item);
+        }
+    }
+
+    public synchronized boolean removeItem(String itemId) {
+        List<Item> items = new ArrayList<>(snapshot.getItems());
+        if (!items.removeIf(item -> item.getId().equals(itemId))) {
+            return false;
+        }
+        publish(items);
+        for (ItemListListener listener : listeners) {
+            listener.itemRemoved(itemId);
+        }
+        return true;
+    }
+
+    public void editItem(String itemId, Scanner scanner) {
+        Item itemToEdit = getItemById(itemId);
+        if (itemToEdit != null) {
+            System.out.println("Editing Item - Current Details:");
+            System.out.println("ID: " + itemToEdit.getId() + " | Name: " + itemToEdit.getName() + " | Price: " + itemToEdit.getPrice());
+
+            String newName = itemToEdit.getName();
+            double newPrice = itemToEdit.getPrice();
+
+            System.out.print("Enter new Item Name (press Enter to keep the current name): ");
+            String newNameInput = scanner.nextLine();
+            if (!newNameInput.isEmpty()) {
+                newName = newNameInput;
+            }
+
+            System.out.print("Enter new Item Price (press Enter to keep the current price): ");
+            String newPriceInput = scanner.nextLine();
+            if (!newPriceInput.isEmpty()) {
+                try {
+                    newPrice = Double.parseDouble(newPriceInput);
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid price format. Item price remains unchanged.");
+                }
+            }
+
+            if (updateItem(itemId, newName, newPrice)) {
+                System.out.println("Item edited successfully!");
+            } else {
+                System.out.println("Item not found with ID: " + itemId);
+            }
+        } else {
+            System.out.println("Item not found with ID: " + itemId);
+        }
+    }
 /**
-     * Menambahkan transaksi ke dalam daftar transaksi.
+     * Mengganti nama dan harga item dengan menerbitkan snapshot katalog baru.
      *
-     * @param transaction Transaksi yang akan ditambahkan.
+     * @param itemId ID item yang akan diubah.
+     * @param name   Nama baru untuk item.
+     * @param price  Harga baru untuk item.
+     * @return true jika item ditemukan dan diubah, false jika tidak.
      */
-    public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
+    public synchronized boolean updateItem(String itemId, String name, double price) {
+        List<Item> items = new ArrayList<>(snapshot.getItems());
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if (item.getId().equals(itemId)) {
+                Item editedItem = item.withDetails(name, price);
+                items.set(i, editedItem);
+                publish(items);
+                for (ItemListListener listener : listeners) {
+                    listener.itemEdited(editedItem);
+                }
+                return true;
+            }
+        }
+        return false;
     }
+
 /**
-     * Melihat riwayat transaksi untuk pengguna reguler tertentu.
+     * Mengubah harga semua item yang lolos filter secara paralel (fork/join).
+     * Harga baru dihitung di luar lock, lalu diterbitkan sebagai satu snapshot
+     * sehingga pengguna melihat semua perubahan sekaligus atau tidak sama sekali.
+     * Jika katalog berubah selama perhitungan, perhitungan diulang dari snapshot terbaru.
+     * Listener menerima semua item yang berubah dalam satu event itemsEdited.
      *
-     * @param user Pengguna reguler yang riwayat transaksinya akan dilihat.
+     * @param filter      Filter item yang akan diubah harganya.
+     * @param priceUpdate Fungsi yang menghitung harga baru dari harga lama.
+     * @return Jumlah item yang harganya diubah.
+     * @throws IllegalArgumentException Jika ada harga baru yang negatif; katalog tidak diubah sama sekali.
      */
-    public void viewUserTransactions(RegularUser user) {
-        printedItemIds.clear(); 
-        System.out.println("Shopping History for User: " + user.getUsername());
-        for (Transaction transaction : transactions) {
-            if (transaction.getItems().stream().anyMatch(item -> user instanceof RegularUser && item.getPrice() > 0)) {
-                printTransactionDetails(transaction);
+    public int updatePrices(Predicate<Item> filter, DoubleUnaryOperator priceUpdate) {
+        while (true) {
+            CatalogSnapshot base = snapshot;
+            Item[] source = base.getItems().toArray(new Item[0]);
+            Item[] updated = new Item[source.length];
+            int changed = ForkJoinPool.commonPool().invoke(new BulkPriceTask(source, updated, 0, source.length, filter, priceUpdate));
+
+            synchronized (this) {
+                if (snapshot != base) {
+                    continue;
+                }
+                if (changed == 0) {
+                    return 0;
+                }
+                publish(Arrays.asList(updated));
+                List<Item> editedItems = new ArrayList<>(changed);
+                for (int i = 0; i < source.length; i++) {
+                    if (updated[i] != source[i] && base.getItem(source[i].getId()) == source[i]) {
+                        editedItems.add(updated[i]);
+                    }
+                }
+                notifyItemsEdited(editedItems);
+                return changed;
             }
         }
     }
+
 /**
-     * Melihat semua transaksi yang terjadi.
+     * Mengubah nama dan harga beberapa item sekaligus dalam satu snapshot.
+     * Item yang ID-nya tidak ada di katalog diabaikan.
+     *
+     * @param editedItems Item-item dengan detail terbaru.
+     * @return Jumlah item yang diubah.
      */
-    public void viewTransactions() {
-        printedItemIds.clear(); 
-        System.out.println("All Transactions:");
-        for (Transaction transaction : transactions) {
-            printTransactionDetails(transaction);
+    public synchronized int updateItems(List<Item> editedItems) {
+        Map<String, Item> editsById = new HashMap<>();
+        for (Item editedItem : editedItems) {
+            editsById.put(editedItem.getId(), editedItem);
+        }
+        List<Item> items = new ArrayList<>(snapshot.getItems());
+        List<Item> applied = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item edit = editsById.get(items.get(i).getId());
+            if (edit != null) {
+                Item editedItem = items.get(i).withDetails(edit.getName(), edit.getPrice());
+                items.set(i, editedItem);
+                applied.add(editedItem);
+            }
+        }
+        if (applied.isEmpty()) {
+            return 0;
         }
+        publish(items);
+        notifyItemsEdited(applied);
+        return applied.size();
     }
 
-    private void printTransactionDetails(Transaction transaction) {
-        System.out.println("Transaction ID: " + transaction.getId());
-        System.out.println("Total Price: " + transaction.getTotalPrice());
-        System.out.println("Payment Method: " + transaction.getPaymentMethod().getMethodName());
-        System.out.println("Items Purchased:");
+    private void notifyItemsEdited(List<Item> editedItems) {
+        List<Item> view = Collections.unmodifiableList(editedItems);
+        for (ItemListListener listener : listeners) {
+            listener.itemsEdited(view);
+        }
+    }
 
-        Set<String> printedItemIdsForTransaction = new HashSet<>(); 
+    public synchronized boolean addItemToCart(String itemId, RegularUser user) {
+        Item itemToAdd = getItemById(itemId);
+        if (itemToAdd == null) {
+            return false;
+        }
+        cartMap.computeIfAbsent(user, k -> new ArrayList<>()).add(itemToAdd);
+        for (ItemListListener listener : listeners) {
+            listener.cartItemAdded(user, itemToAdd);
+        }
+        return true;
+    }
+/**
+     * Mengosongkan keranjang belanja pengguna.
+     *
+     * @param user Pengguna pemilik keranjang.
+     */
+    public synchronized void clearCart(RegularUser user) {
+        List<Item> cart = cartMap.remove(user);
+        if (cart != null && !cart.isEmpty()) {
+            for (ItemListListener listener : listeners) {
+                listener.cartCleared(user);
+            }
+        }
+    }
 
-        boolean isRegularUser = transaction.getItems().stream().anyMatch(item -> item.getPrice() > 0);
+    public List<Item> getItems() {
+        return snapshot.getItems();
+    }
+/**
+     * Mendaftarkan listener perubahan katalog.
+     * Item dan isi keranjang yang sudah ada (termasuk keranjang yang dipulihkan dari
+     * checkpoint) dikirim terlebih dahulu sebagai event itemAdded dan cartItemAdded.
+     * Listener yang sudah terdaftar tidak didaftarkan ulang.
+     *
+     * @param listener Listener yang akan menerima event perubahan katalog.
+     */
+    public synchronized void addListener(ItemListListener listener) {
+        if (listeners.contains(listener)) {
+            return;
+        }
+        for (Item item : snapshot.getItems()) {
+            listener.itemAdded(item);
+        }
+        for (Map.Entry<RegularUser, List<Item>> cart : cartMap.entrySet()) {
+            for (Item item : cart.getValue()) {
+                listener.cartItemAdded(cart.getKey(), item);
+            }
+        }
+        listeners.add(listener);
+    }
+/**
+     * Mendapatkan snapshot katalog terbaru tanpa lock.
+     *
+     * @return Snapshot katalog yang sedang berlaku.
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        for (Item item : transaction.getItems()) {
-            String itemId = item.getId();
+    /**
+     * Mendapatkan daftar pengguna yang memiliki keranjang belanja.
+     *
+     * @return Daftar pengguna pemilik keranjang.
+     */
+    public synchronized List<RegularUser> getCartUsers() {
+        return new ArrayList<>(cartMap.keySet());
+    }
+/**
+     * Mengganti isi keranjang pengguna secara langsung saat pemulihan data.
+     * Listener tidak diberi tahu karena data ini berasal dari checkpoint.
+     *
+     * @param user  Pengguna pemilik keranjang.
+     * @param items Isi keranjang yang dipulihkan.
+     */
+    public synchronized void restoreCart(RegularUser user, List<Item> items) {
+        if (items.isEmpty()) {
+            cartMap.remove(user);
+        } else {
+            cartMap.put(user, new ArrayList<>(items));
+        }
+    }
 
-            if (isRegularUser && !printedItemIdsForTransaction.contains(itemId)) {
-                System.out.println("  ID: " + itemId + " | Name: " + item.getName() + " | Price: " + item.getPrice());
-                
-                printedItemIdsForTransaction.add(itemId);
+    public List<Item> getItemsInCart(RegularUser user) {
+        return cartMap.getOrDefault(user, Collections.emptyList());
+    }
+/**
+     * Menyamakan isi keranjang dengan snapshot katalog terbaru sebelum checkout.
+     * Item immutable sehingga keranjang menyimpan item saat ditambahkan; metode ini
+     * mengganti setiap item dengan versi terbarunya agar perubahan nama dan harga
+     * (termasuk perubahan harga massal) ikut berlaku di keranjang. Item yang sudah
+     * dihapus dari katalog tetap berada di keranjang dengan detail terakhirnya.
+     *
+     * @param user Pengguna pemilik keranjang.
+     */
+    public synchronized void refreshCart(RegularUser user) {
+        List<Item> cart = cartMap.get(user);
+        if (cart == null) {
+            return;
+        }
+        CatalogSnapshot current = snapshot;
+        for (int i = 0; i < cart.size(); i++) {
+            Item latest = current.getItem(cart.get(i).getId());
+            if (latest != null) {
+                cart.set(i, latest);
             }
         }
+    }
 
-        printedItemIds.addAll(printedItemIdsForTransaction);
+    private Item getItemById(String itemId) {
+        return snapshot.getItem(itemId);
+    }
 
-        System.out.println("-------------------------");
+    private void publish(List<Item> items) {
+        snapshot = new CatalogSnapshot(snapshot.getVersion() + 1, items);
+    }
+}
+/**
+ * Tugas fork/join yang menghitung harga baru untuk sebagian daftar item.
+ */
+class BulkPriceTask extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+    private static final int THRESHOLD = 2048;
+    private final Item[] source;
+    private final Item[] target;
+    private final int from;
+    private final int to;
+    private final Predicate<Item> filter;
+    private final DoubleUnaryOperator priceUpdate;
+/**
+     * Konstruktor untuk membuat tugas pada rentang indeks tertentu.
+     *
+     * @param source      Item sebelum diubah.
+     * @param target      Array tujuan untuk item hasil perubahan.
+     * @param from        Indeks awal (inklusif).
+     * @param to          Indeks akhir (eksklusif).
+     * @param filter      Filter item yang akan diubah harganya.
+     * @param priceUpdate Fungsi yang menghitung harga baru dari harga lama.
+     */
+    BulkPriceTask(Item[] source, Item[] target, int from, int to, Predicate<Item> filter, DoubleUnaryOperator priceUpdate) {
+        this.source = source;
+        this.target = target;
+        this.from = from;
+        this.to = to;
+        this.filter = filter;
+        this.priceUpdate = priceUpdate;
     }
 
-    public void clearPrintedItemIds() {
-        printedItemIds.clear();
+    @Override
+    protected Integer compute() {
+        if (to - from <= THRESHOLD) {
+            int changed = 0;
+            for (int i = from; i < to; i++) {
+                Item item = source[i];
+                if (filter.test(item)) {
+                    double newPrice = priceUpdate.applyAsDouble(item.getPrice());
+                    if (!(newPrice >= 0)) {
+                        throw new IllegalArgumentException("Price must not be negative (item " + item.getId() + ")");
+                    }
+                    if (newPrice != item.getPrice()) {
+                        target[i] = item.withDetails(item.getName(), newPrice);
+                        changed++;
+                        continue;
+                    }
+                }
+                target[i] = item;
+            }
+            return changed;
+        }
+        int middle = (from + to) >>> 1;
+        BulkPriceTask left = new BulkPriceTask(source, target, from, middle, filter, priceUpdate);
+        BulkPriceTask right = new BulkPriceTask(source, target, middle, to, filter, priceUpdate);
+        left.fork();
+        return right.compute() + left.join();
     }
 }
+/**
+ * Kelas yang mengelola daftar pengguna dalam aplikasi toko online.
+ * Pengguna disimpan dalam tabel open addressing yang menunjuk ke record
+ * username/password yang dipadatkan dalam satu array byte, dengan flag peran
+ * menggantikan objek Admin/RegularUser. Objek User hanya dibuat saat dibutuhkan.
+ * Record pengguna yang ditimpa dipakai ulang jika muat, dan array record dipadatkan
+ * ketika lebih dari separuh isinya adalah record mati.
+ */
+class UserList {
+    static final byte ROLE_ADMIN = 1;
+    static final byte ROLE_REGULAR = 2;
+    private static UserList instance = new UserList();
+    private byte[] records;
+    private int recordsLength;
+    private int deadBytes;
+    private int[] slotOffsets;
+    private int[] slotHashes;
+    private byte[] slotRoles;
+    private int size;
+    private long version;
+
+    private UserList() {
+        records = new byte[256];
+        slotOffsets = new int[16];
+        slotHashes = new int[16];
+        slotRoles = new byte[16];
+    }
+/**
+     * Mengembalikan instance tunggal dari kelas UserList (Singleton).
+     *
+     * @return Instance tunggal dari kelas UserList.
+     */
+    public static UserList getInstance() {
+        return instance;
+    }
 
-   
+    public synchronized void addUser(User user) {
+        byte[] username = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] password = user.getPassword().getBytes(StandardCharsets.UTF_8);
+        if (username.length > 0xFFFF || password.length > 0xFFFF) {
+            throw new IllegalArgumentException("Username or password is too long");
+        }
+        if ((size + 1) * 4 > slotOffsets.length * 3) {
+            resize();
+        }
+        int hash = hash(username);
+        int slot = findSlot(username, hash);
+        byte role = user instanceof Admin ? ROLE_ADMIN : ROLE_REGULAR;
+        int needed = 4 + username.length + password.length;
+        if (slotOffsets[slot] == 0) {
+            size++;
+            slotOffsets[slot] = appendRecord(username, password) + 1;
+        } else {
+            int offset = slotOffsets[slot] - 1;
+            int passwordOffset = offset + 2 + username.length;
+            if (slotRoles[slot] == role && bytesEqual(passwordOffset, password)) {
+                return;
+            }
+            int oldLength = 4 + username.length + readLength(passwordOffset);
+            if (needed <= oldLength) {
+                writeField(writeField(offset, username), password);
+                deadBytes += oldLength - needed;
+            } else {
+                slotOffsets[slot] = appendRecord(username, password) + 1;
+                deadBytes += oldLength;
+            }
+        }
+        slotHashes[slot] = hash;
+        slotRoles[slot] = role;
+        version++;
+        if (deadBytes > recordsLength / 2) {
+            rehash(slotOffsets.length);
+        }
+    }
+ /**
+     * Mendapatkan pengguna berdasarkan username-nya.
+     *
+     * @param username Username dari pengguna yang dicari.
+     * @return Pengguna yang sesuai dengan username yang diberikan.
+     */
+    public synchronized User getUser(String username) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(key, hash(key));
+        return slotOffsets[slot] == 0 ? null : materialize(slot);
+    }
+/**
+     * Memeriksa username, password, dan peran pengguna langsung pada record yang dipadatkan.
+     *
+     * @param username Username dari pengguna.
+     * @param password Password dari pengguna.
+     * @param role     Peran yang diharapkan (ROLE_ADMIN atau ROLE_REGULAR).
+     * @return Pengguna yang cocok, atau null jika username, password, atau peran tidak sesuai.
+     */
+    public synchronized User authenticate(String username, String password, byte role) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(key, hash(key));
+        if (slotOffsets[slot] == 0 || slotRoles[slot] != role) {
+            return null;
+        }
+        int offset = slotOffsets[slot] - 1;
+        int passwordOffset = offset + 2 + readLength(offset);
+        byte[] expected = password.getBytes(StandardCharsets.UTF_8);
+        if (!bytesEqual(passwordOffset, expected)) {
+            return null;
+        }
+        return materialize(slot);
+    }
+/**
+     * Mendapatkan salinan daftar semua pengguna.
+     *
+     * @return Daftar semua pengguna.
+     */
+    public synchronized List<User> getUsers() {
+        List<User> users = new ArrayList<>(size);
+        for (int slot = 0; slot < slotOffsets.length; slot++) {
+            if (slotOffsets[slot] != 0) {
+                users.add(materialize(slot));
+            }
+        }
+        return users;
+    }
+/**
+     * Mendapatkan nomor versi daftar pengguna, yang bertambah setiap kali pengguna ditambahkan.
+     *
+     * @return Nomor versi daftar pengguna.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    private int findSlot(byte[] username, int hash) {
+        int mask = slotOffsets.length - 1;
+        int slot = hash & mask;
+        while (slotOffsets[slot] != 0) {
+            if (slotHashes[slot] == hash && bytesEqual(slotOffsets[slot] - 1, username)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private User materialize(int slot) {
+        int offset = slotOffsets[slot] - 1;
+        int usernameLength = readLength(offset);
+        String username = new String(records, offset + 2, usernameLength, StandardCharsets.UTF_8);
+        int passwordOffset = offset + 2 + usernameLength;
+        String password = new String(records, passwordOffset + 2, readLength(passwordOffset), StandardCharsets.UTF_8);
+        return slotRoles[slot] == ROLE_ADMIN ? new Admin(username, password) : new RegularUser(username, password);
+    }
+
+    private boolean bytesEqual(int offset, byte[] value) {
+        if (readLength(offset) != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (records[offset + 2 + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readLength(int offset) {
+        return ((records[offset] & 0xFF) << 8) | (records[offset + 1] & 0xFF);
+    }
+
+    private int appendRecord(byte[] username, byte[] password) {
+        int needed = 4 + username.length + password.length;
+        if (recordsLength + needed > records.length) {
+            records = Arrays.copyOf(records, Math.max(records.length * 2, recordsLength + needed));
+        }
+        int offset = recordsLength;
+        recordsLength = writeField(writeField(offset, username), password);
+        return offset;
+    }
+
+    private int writeField(int offset, byte[] value) {
+        records[offset] = (byte) (value.length >>> 8);
+        records[offset + 1] = (byte) value.length;
+        System.arraycopy(value, 0, records, offset + 2, value.length);
+        return offset + 2 + value.length;
+    }
+
+    private void resize() {
+        rehash(slotOffsets.length * 2);
+    }
+/**
+     * Membangun ulang tabel dengan kapasitas tertentu dan sekaligus memadatkan
+     * array record, sehingga record mati dari pengguna yang ditimpa ikut dibuang.
+     */
+    private void rehash(int capacity) {
+        byte[] oldRecords = records;
+        int[] oldOffsets = slotOffsets;
+        int[] oldHashes = slotHashes;
+        byte[] oldRoles = slotRoles;
+
+        records = new byte[Math.max(256, recordsLength - deadBytes)];
+        recordsLength = 0;
+        deadBytes = 0;
+        slotOffsets = new int[capacity];
+        slotHashes = new int[capacity];
+        slotRoles = new byte[capacity];
+
+        int mask = slotOffsets.length - 1;
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] == 0) {
+                continue;
+            }
+            int offset = oldOffsets[i] - 1;
+            int usernameLength = ((oldRecords[offset] & 0xFF) << 8) | (oldRecords[offset + 1] & 0xFF);
+            int passwordOffset = offset + 2 + usernameLength;
+            int passwordLength = ((oldRecords[passwordOffset] & 0xFF) << 8) | (oldRecords[passwordOffset + 1] & 0xFF);
+            int recordLength = 4 + usernameLength + passwordLength;
+
+            int slot = oldHashes[i] & mask;
+            while (slotOffsets[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            System.arraycopy(oldRecords, offset, records, recordsLength, recordLength);
+            slotOffsets[slot] = recordsLength + 1;
+            slotHashes[slot] = oldHashes[i];
+            slotRoles[slot] = oldRoles[i];
+            recordsLength += recordLength;
+        }
+    }
+
+    private static int hash(byte[] username) {
+        int hash = Arrays.hashCode(username) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
+/**
+ * Kelas yang merepresentasikan transaksi dalam aplikasi toko online.
+ */
+class Transaction {
+    private String id;
+    private List<Item> items;
+    private double totalPrice;
+    private PaymentMethod paymentMethod;
+/**
+     * Konstruktor untuk membuat instance transaksi dengan ID, daftar item, total harga, dan metode pembayaran.
+     */
+    public Transaction(String id, List<Item> items, double totalPrice, PaymentMethod paymentMethod) {
+        this.id = id;
+        this.items = items;
+        this.totalPrice = totalPrice;
+        this.paymentMethod = paymentMethod;
+    }
+/**
+     * Mendapatkan ID dari transaksi.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public double getTotalPrice() {
+        return totalPrice;
+    }
+/**
+     * Mendapatkan metode pembayaran yang digunakan dalam transaksi.
+     *
+     * @return Metode pembayaran dalam transaksi.
+     */
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+}
+/**
+ * Kelas yang mengelola daftar transaksi dalam aplikasi toko online.
+ */
+class TransactionList {
+    private static TransactionList instance = new TransactionList();
+    private List<Transaction> transactions;
+    private Set<String> printedItemIds; 
+    private List<TransactionListener> listeners;
+
+    private TransactionList() {
+        transactions = new ArrayList<>();
+        printedItemIds = new HashSet<>();
+        listeners = new ArrayList<>();
+    }
+/**
+     * Mengembalikan instance tunggal dari kelas TransactionList (Singleton).
+     *
+     * @return Instance tunggal dari kelas TransactionList.
+     */
+    public static TransactionList getInstance() {
+        return instance;
+    }
+/**
+     * Menambahkan transaksi ke dalam daftar transaksi.
+     *
+     * @param transaction Transaksi yang akan ditambahkan.
+     */
+    public synchronized void addTransaction(Transaction transaction) {
+        transactions.add(transaction);
+        notifyListeners(transaction);
+    }
+/**
+     * Menambahkan sekumpulan transaksi ke dalam daftar transaksi dalam satu langkah.
+     * Listener dipanggil setelah semua transaksi tersimpan; kegagalan listener
+     * hanya dicatat dan tidak membatalkan transaksi yang sudah tersimpan.
+     *
+     * @param batch Daftar transaksi yang akan ditambahkan.
+     */
+    public synchronized void addTransactions(List<Transaction> batch) {
+        transactions.addAll(batch);
+        for (Transaction transaction : batch) {
+            notifyListeners(transaction);
+        }
+    }
+
+    private void notifyListeners(Transaction transaction) {
+        for (TransactionListener listener : listeners) {
+            try {
+                listener.transactionAdded(transaction);
+            } catch (RuntimeException e) {
+                System.out.println("Transaction listener failed for " + transaction.getId() + ": " + e);
+            }
+        }
+    }
+/**
+     * Mendapatkan jumlah transaksi yang tersimpan.
+     *
+     * @return Jumlah transaksi.
+     */
+    public synchronized int getTransactionCount() {
+        return transactions.size();
+    }
+/**
+     * Mendapatkan salinan transaksi mulai dari posisi tertentu.
+     *
+     * @param fromIndex Posisi transaksi pertama yang diambil.
+     * @return Transaksi dari posisi fromIndex sampai yang terbaru.
+     */
+    public synchronized List<Transaction> getTransactionsFrom(int fromIndex) {
+        return new ArrayList<>(transactions.subList(Math.min(fromIndex, transactions.size()), transactions.size()));
+    }
+/**
+     * Mendaftarkan listener transaksi baru.
+     * Transaksi yang sudah ada dikirim terlebih dahulu ke listener.
+     * Listener yang sudah terdaftar tidak didaftarkan ulang.
+     *
+     * @param listener Listener yang akan menerima event transaksi.
+     */
+    public synchronized void addListener(TransactionListener listener) {
+        if (listeners.contains(listener)) {
+            return;
+        }
+        for (Transaction transaction : transactions) {
+            listener.transactionAdded(transaction);
+        }
+        listeners.add(listener);
+    }
+/**
+     * Melihat riwayat transaksi untuk pengguna reguler tertentu.
+     *
+     * @param user Pengguna reguler yang riwayat transaksinya akan dilihat.
+     */
+    public synchronized void viewUserTransactions(RegularUser user) {
+        printedItemIds.clear(); 
+        System.out.println("Shopping History for User: " + user.getUsername());
+        for (Transaction transaction : transactions) {
+            if (transaction.getItems().stream().anyMatch(item -> user instanceof RegularUser && item.getPrice() > 0)) {
+                printTransactionDetails(transaction);
+            }
+        }
+    }
+/**
+     * Melihat semua transaksi yang terjadi.
+     */
+    public synchronized void viewTransactions() {
+        printedItemIds.clear(); 
+        System.out.println("All Transactions:");
+        for (Transaction transaction : transactions) {
+            printTransactionDetails(transaction);
+        }
+    }
+
+    private void printTransactionDetails(Transaction transaction) {
+        System.out.println("Transaction ID: " + transaction.getId());
+        System.out.println("Total Price: " + transaction.getTotalPrice());
+        System.out.println("Payment Method: " + transaction.getPaymentMethod().getMethodName());
+        System.out.println("Items Purchased:");
+
+        Set<String> printedItemIdsForTransaction = new HashSet<>(); 
+
+        boolean isRegularUser = transaction.getItems().stream().anyMatch(item -> item.getPrice() > 0);
+
+        for (Item item : transaction.getItems()) {
+            String itemId = item.getId();
+
+            if (isRegularUser && !printedItemIdsForTransaction.contains(itemId)) {
+                System.out.println("  ID: " + itemId + " | Name: " + item.getName() + " | Price: " + item.getPrice());
+                
+                printedItemIdsForTransaction.add(itemId);
+            }
+        }
+
+        printedItemIds.addAll(printedItemIdsForTransaction);
+
+        System.out.println("-------------------------");
+    }
+
+    public synchronized void clearPrintedItemIds() {
+        printedItemIds.clear();
+    }
+}
+/**
+ * Kelas antrean checkout yang mengumpulkan transaksi dari banyak sesi
+ * lalu menyimpannya ke TransactionList secara berkelompok (group commit).
+ * Batch langsung disimpan begitu antrean kosong, tanpa menunggu; transaksi yang
+ * masuk selama batch sebelumnya disimpan menjadi batch berikutnya. Ukuran batch
+ * maksimum dapat diatur melalui system property checkout.maxBatchSize.
+ * Batch hanya disimpan di memori; penyimpanan ke disk dilakukan oleh checkpoint berkala.
+ * Transaksi dan pengosongan keranjang pemiliknya disimpan di bawah kunci ItemList yang sama,
+ * sehingga checkpoint tidak pernah melihat keranjang dan transaksinya sekaligus.
+ */
+class CheckoutQueue {
+    private static CheckoutQueue instance = new CheckoutQueue(Integer.getInteger("checkout.maxBatchSize", 64));
+    private final BlockingQueue<PendingCheckout> pending;
+    private final int maxBatchSize;
+    private volatile boolean stopped;
+/**
+     * Konstruktor untuk membuat antrean checkout dan menjalankan thread penyimpannya.
+     *
+     * @param maxBatchSize Jumlah transaksi maksimum dalam satu batch.
+     */
+    public CheckoutQueue(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.pending = new LinkedBlockingQueue<>();
+        this.maxBatchSize = maxBatchSize;
+
+        Thread worker = new Thread(this::processBatches, "checkout-queue");
+        worker.setDaemon(true);
+        worker.start();
+    }
+/**
+     * Mengembalikan instance tunggal dari kelas CheckoutQueue (Singleton).
+     *
+     * @return Instance tunggal dari kelas CheckoutQueue.
+     */
+    public static CheckoutQueue getInstance() {
+        return instance;
+    }
+/**
+     * Memasukkan transaksi ke antrean checkout. Keranjang pengguna dikosongkan
+     * bersamaan dengan penyimpanan transaksinya.
+     *
+     * @param user Pengguna yang melakukan checkout.
+     * @param transaction Transaksi yang akan disimpan.
+     * @return Future yang selesai setelah batch berisi transaksi ini tersimpan.
+     */
+    public CompletableFuture<Transaction> submit(RegularUser user, Transaction transaction) {
+        PendingCheckout checkout = new PendingCheckout(user, transaction);
+        pending.add(checkout);
+        if (stopped) {
+            failPending(Collections.emptyList());
+        }
+        return checkout.completion;
+    }
+
+/**
+     * Mengambil semua checkout yang sudah menunggu (paling banyak maxBatchSize) lalu
+     * menyimpannya sekaligus. Jika thread berhenti karena interrupt atau Error, semua
+     * checkout yang belum selesai digagalkan agar tidak ada pemanggil yang menunggu selamanya.
+     */
+    private void processBatches() {
+        List<PendingCheckout> batch = new ArrayList<>(maxBatchSize);
+        List<Transaction> transactions = new ArrayList<>(maxBatchSize);
+        try {
+            while (true) {
+                batch.add(pending.take());
+                pending.drainTo(batch, maxBatchSize - 1);
+
+                for (PendingCheckout checkout : batch) {
+                    transactions.add(checkout.transaction);
+                }
+                if (!commit(batch, transactions)) {
+                    batch.clear();
+                    transactions.clear();
+                    continue;
+                }
+                for (PendingCheckout checkout : batch) {
+                    checkout.completion.complete(checkout.transaction);
+                }
+                batch.clear();
+                transactions.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            failPending(batch);
+        }
+    }
+
+/**
+     * Menyimpan satu batch transaksi lalu mengosongkan keranjang pemiliknya, keduanya di bawah
+     * kunci ItemList. Jika penyimpanan gagal, semua checkout digagalkan dan keranjang tetap utuh.
+     * Kegagalan listener saat mengosongkan keranjang hanya dicatat, karena transaksinya sudah tersimpan.
+     *
+     * @return true jika transaksi tersimpan.
+     */
+    private boolean commit(List<PendingCheckout> batch, List<Transaction> transactions) {
+        ItemList itemList = ItemList.getInstance();
+        synchronized (itemList) {
+            try {
+                TransactionList.getInstance().addTransactions(transactions);
+            } catch (RuntimeException e) {
+                for (PendingCheckout checkout : batch) {
+                    checkout.completion.completeExceptionally(e);
+                }
+                return false;
+            }
+            for (PendingCheckout checkout : batch) {
+                try {
+                    itemList.clearCart(checkout.user);
+                } catch (RuntimeException e) {
+                    System.out.println("Clearing the cart of " + checkout.user.getUsername() + " failed: " + e);
+                }
+            }
+        }
+        return true;
+    }
+
+/**
+     * Menggagalkan checkout yang belum tersimpan ketika thread antrean berhenti,
+     * sehingga pemanggil yang menunggu join() tidak menunggu selamanya.
+     */
+    private void failPending(List<PendingCheckout> batch) {
+        IllegalStateException stoppedError = new IllegalStateException("Checkout queue stopped");
+        for (PendingCheckout checkout : batch) {
+            checkout.completion.completeExceptionally(stoppedError);
+        }
+        PendingCheckout checkout;
+        while ((checkout = pending.poll()) != null) {
+            checkout.completion.completeExceptionally(stoppedError);
+        }
+    }
+
+    private static class PendingCheckout {
+        private final RegularUser user;
+        private final Transaction transaction;
+        private final CompletableFuture<Transaction> completion;
+
+        PendingCheckout(RegularUser user, Transaction transaction) {
+            this.user = user;
+            this.transaction = transaction;
+            this.completion = new CompletableFuture<>();
+        }
+    }
+}
+/**
+ * Kelas yang merepresentasikan satu aturan promosi yang dibuat oleh admin.
+ */
+class Promotion {
+    /**
+     * Jenis-jenis promosi yang didukung.
+     */
+    enum Type {
+        ITEM_PERCENT, ITEM_AMOUNT, BUY_GET_FREE, PAYMENT_PERCENT, CART_THRESHOLD
+    }
+
+    private final Type type;
+    private final String target;
+    private final double value;
+    private final int buyQuantity;
+    private final int freeQuantity;
+    private final double minTotal;
+
+    private Promotion(Type type, String target, double value, int buyQuantity, int freeQuantity, double minTotal) {
+        this.type = type;
+        this.target = target;
+        this.value = value;
+        this.buyQuantity = buyQuantity;
+        this.freeQuantity = freeQuantity;
+        this.minTotal = minTotal;
+    }
+/**
+     * Membuat promosi diskon persentase untuk satu item.
+     *
+     * @param itemId  ID item yang didiskon.
+     * @param percent Besar diskon dalam persen.
+     * @return Promosi baru.
+     */
+    public static Promotion itemPercent(String itemId, double percent) {
+        requirePercent(percent);
+        return new Promotion(Type.ITEM_PERCENT, itemId, percent, 0, 0, 0);
+    }
+/**
+     * Membuat promosi potongan harga tetap untuk satu item.
+     *
+     * @param itemId ID item yang didiskon.
+     * @param amount Besar potongan per item.
+     * @return Promosi baru.
+     */
+    public static Promotion itemAmount(String itemId, double amount) {
+        requireAmount(amount);
+        return new Promotion(Type.ITEM_AMOUNT, itemId, amount, 0, 0, 0);
+    }
+/**
+     * Membuat promosi beli N gratis M untuk satu item.
+     *
+     * @param itemId       ID item yang dipromosikan.
+     * @param buyQuantity  Jumlah item yang harus dibeli (N).
+     * @param freeQuantity Jumlah item gratis (M).
+     * @return Promosi baru.
+     */
+    public static Promotion buyGetFree(String itemId, int buyQuantity, int freeQuantity) {
+        if (buyQuantity < 1 || freeQuantity < 1) {
+            throw new IllegalArgumentException("Quantities must be at least 1");
+        }
+        return new Promotion(Type.BUY_GET_FREE, itemId, 0, buyQuantity, freeQuantity, 0);
+    }
+/**
+     * Membuat promosi diskon persentase untuk metode pembayaran tertentu (misalnya cashback QRIS).
+     *
+     * @param methodName Nama metode pembayaran (Bank, COD, atau QRIS; huruf besar/kecil tidak dibedakan).
+     * @param percent    Besar diskon dalam persen.
+     * @return Promosi baru.
+     * @throws IllegalArgumentException Jika metode pembayaran tidak dikenal atau persentase tidak valid.
+     */
+    public static Promotion paymentPercent(String methodName, double percent) {
+        requirePercent(percent);
+        PaymentMethod method = ShopProtocol.paymentMethodFor(methodName.trim());
+        if (method instanceof UnknownPayment) {
+            throw new IllegalArgumentException("Unknown payment method: " + methodName);
+        }
+        return new Promotion(Type.PAYMENT_PERCENT, method.getMethodName(), percent, 0, 0, 0);
+    }
+/**
+     * Membuat promosi potongan harga untuk keranjang dengan total minimum tertentu.
+     *
+     * @param minTotal Total belanja minimum.
+     * @param amount   Besar potongan.
+     * @return Promosi baru.
+     */
+    public static Promotion cartThreshold(double minTotal, double amount) {
+        if (!(minTotal >= 0)) {
+            throw new IllegalArgumentException("Minimum cart total must not be negative");
+        }
+        requireAmount(amount);
+        return new Promotion(Type.CART_THRESHOLD, null, amount, 0, 0, minTotal);
+    }
+
+    private static void requirePercent(double percent) {
+        if (!(percent >= 0 && percent <= 100)) {
+            throw new IllegalArgumentException("Discount percentage must be between 0 and 100");
+        }
+    }
+
+    private static void requireAmount(double amount) {
+        if (!(amount >= 0)) {
+            throw new IllegalArgumentException("Discount amount must not be negative");
+        }
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public int getBuyQuantity() {
+        return buyQuantity;
+    }
+
+    public int getFreeQuantity() {
+        return freeQuantity;
+    }
+
+    public double getMinTotal() {
+        return minTotal;
+    }
+/**
+     * Mendapatkan deskripsi promosi untuk ditampilkan kepada admin.
+     *
+     * @return Deskripsi promosi dalam bentuk String.
+     */
+    public String describe() {
+        switch (type) {
+            case ITEM_PERCENT:
+                return value + "% off item " + target;
+            case ITEM_AMOUNT:
+                return value + " off item " + target;
+            case BUY_GET_FREE:
+                return "Buy " + buyQuantity + " get " + freeQuantity + " free on item " + target;
+            case PAYMENT_PERCENT:
+                return value + "% off when paying with " + target;
+            default:
+                return value + " off carts of at least " + minTotal;
+        }
+    }
+}
+/**
+ * Kelas yang mengelola promosi aktif dan menghitung diskon saat checkout.
+ * Setiap kali admin mengubah promosi, aturan dikompilasi ulang menjadi indeks
+ * per item dan per metode pembayaran, sehingga perhitungan diskon hanya
+ * sebanding dengan jumlah item di keranjang, bukan jumlah promosi aktif.
+ */
+class PromotionEngine {
+    private static PromotionEngine instance = new PromotionEngine();
+    private final ThreadLocal<int[]> bundleCountBuffer = ThreadLocal.withInitial(() -> new int[0]);
+    private List<Promotion> promotions;
+    private volatile CompiledRules rules;
+
+    private PromotionEngine() {
+        promotions = new ArrayList<>();
+        rules = compile(promotions);
+    }
+/**
+     * Mengembalikan instance tunggal dari kelas PromotionEngine (Singleton).
+     *
+     * @return Instance tunggal dari kelas PromotionEngine.
+     */
+    public static PromotionEngine getInstance() {
+        return instance;
+    }
+
+    public synchronized void addPromotion(Promotion promotion) {
+        promotions.add(promotion);
+        rules = compile(promotions);
+    }
+
+    public synchronized void clearPromotions() {
+        promotions.clear();
+        rules = compile(promotions);
+    }
+
+    public synchronized List<Promotion> getPromotions() {
+        return new ArrayList<>(promotions);
+    }
+/**
+     * Menghitung total diskon untuk isi keranjang dan metode pembayaran tertentu.
+     * Diskon item dan beli N gratis M diterapkan terlebih dahulu, lalu diskon
+     * total belanja minimum, kemudian diskon metode pembayaran. Penghitung beli N
+     * gratis M memakai buffer per thread sehingga perhitungan tidak mengalokasikan objek.
+     *
+     * @param items         Daftar item dalam keranjang belanja.
+     * @param paymentMethod Metode pembayaran yang dipilih.
+     * @return Total diskon, tidak pernah melebihi total harga keranjang.
+     */
+    public double calculateDiscount(List<Item> items, PaymentMethod paymentMethod) {
+        CompiledRules current = rules;
+        int[] bundleCounts = bundleCountBuffer.get();
+        if (bundleCounts.length < current.bundleCount) {
+            bundleCounts = new int[current.bundleCount];
+            bundleCountBuffer.set(bundleCounts);
+        }
+        Arrays.fill(bundleCounts, 0, current.bundleCount, 0);
+
+        double subtotal = 0;
+        double discount = 0;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            double price = item.getPrice();
+            subtotal += price;
+
+            ItemRule rule = current.itemRules.get(item.getId());
+            if (rule == null) {
+                continue;
+            }
+            if (rule.bundleSlot >= 0) {
+                int position = bundleCounts[rule.bundleSlot]++ % (rule.buyQuantity + rule.freeQuantity);
+                if (position >= rule.buyQuantity) {
+                    discount += price;
+                    continue;
+                }
+            }
+            discount += Math.min(price, price * rule.percent / 100 + rule.amount);
+        }
+
+        double remaining = subtotal - discount;
+        int threshold = findThreshold(current.thresholdMinTotals, remaining);
+        if (threshold >= 0) {
+            double thresholdDiscount = Math.min(remaining, current.thresholdAmounts[threshold]);
+            discount += thresholdDiscount;
+            remaining -= thresholdDiscount;
+        }
+
+        Double paymentPercent = current.paymentPercents.get(paymentMethod.getMethodName());
+        if (paymentPercent != null) {
+            discount += remaining * Math.min(100, paymentPercent) / 100;
+        }
+        return discount;
+    }
+
+    private static int findThreshold(double[] minTotals, double total) {
+        int low = 0;
+        int high = minTotals.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (minTotals[mid] <= total) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static CompiledRules compile(List<Promotion> promotions) {
+        Map<String, ItemRule> itemRules = new HashMap<>();
+        Map<String, Double> paymentPercents = new HashMap<>();
+        TreeMap<Double, Double> thresholds = new TreeMap<>();
+        int bundleCount = 0;
+
+        for (Promotion promotion : promotions) {
+            switch (promotion.getType()) {
+                case ITEM_PERCENT: {
+                    ItemRule rule = itemRules.computeIfAbsent(promotion.getTarget(), k -> new ItemRule());
+                    rule.percent = Math.max(rule.percent, promotion.getValue());
+                    break;
+                }
+                case ITEM_AMOUNT: {
+                    ItemRule rule = itemRules.computeIfAbsent(promotion.getTarget(), k -> new ItemRule());
+                    rule.amount = Math.max(rule.amount, promotion.getValue());
+                    break;
+                }
+                case BUY_GET_FREE: {
+                    ItemRule rule = itemRules.computeIfAbsent(promotion.getTarget(), k -> new ItemRule());
+                    if (rule.bundleSlot < 0) {
+                        rule.bundleSlot = bundleCount++;
+                    }
+                    double freeRatio = (double) promotion.getFreeQuantity() / (promotion.getBuyQuantity() + promotion.getFreeQuantity());
+                    if (rule.buyQuantity == 0 || freeRatio > (double) rule.freeQuantity / (rule.buyQuantity + rule.freeQuantity)) {
+                        rule.buyQuantity = promotion.getBuyQuantity();
+                        rule.freeQuantity = promotion.getFreeQuantity();
+                    }
+                    break;
+                }
+                case PAYMENT_PERCENT:
+                    paymentPercents.merge(promotion.getTarget(), promotion.getValue(), Math::max);
+                    break;
+                case CART_THRESHOLD:
+                    thresholds.merge(promotion.getMinTotal(), promotion.getValue(), Math::max);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        double[] minTotals = new double[thresholds.size()];
+        double[] amounts = new double[thresholds.size()];
+        int i = 0;
+        double bestAmount = 0;
+        for (Map.Entry<Double, Double> entry : thresholds.entrySet()) {
+            // Simpan maksimum berjalan agar threshold tertinggi yang terpenuhi memberi diskon terbaik dari semua threshold di bawahnya.
+            bestAmount = Math.max(bestAmount, entry.getValue());
+            minTotals[i] = entry.getKey();
+            amounts[i] = bestAmount;
+            i++;
+        }
+        return new CompiledRules(itemRules, paymentPercents, minTotals, amounts, bundleCount);
+    }
+
+    private static class ItemRule {
+        private double percent;
+        private double amount;
+        private int buyQuantity;
+        private int freeQuantity;
+        private int bundleSlot = -1;
+    }
+
+    private static class CompiledRules {
+        private final Map<String, ItemRule> itemRules;
+        private final Map<String, Double> paymentPercents;
+        private final double[] thresholdMinTotals;
+        private final double[] thresholdAmounts;
+        private final int bundleCount;
+
+        CompiledRules(Map<String, ItemRule> itemRules, Map<String, Double> paymentPercents,
+                      double[] thresholdMinTotals, double[] thresholdAmounts, int bundleCount) {
+            this.itemRules = itemRules;
+            this.paymentPercents = paymentPercents;
+            this.thresholdMinTotals = thresholdMinTotals;
+            this.thresholdAmounts = thresholdAmounts;
+            this.bundleCount = bundleCount;
+        }
+    }
+}
+/**
+ * Kelas utilitas untuk protokol teks antar proses toko online.
+ * Setiap pesan adalah satu baris berisi field yang di-encode URL dan dipisahkan spasi.
+ */
+class ShopProtocol {
+    private ShopProtocol() {
+    }
+/**
+     * Menggabungkan field-field menjadi satu baris pesan.
+     *
+     * @param fields Field-field pesan.
+     * @return Baris pesan tanpa karakter newline.
+     */
+    public static String encode(String... fields) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(URLEncoder.encode(fields[i], StandardCharsets.UTF_8));
+        }
+        return line.toString();
+    }
+/**
+     * Memecah satu baris pesan menjadi field-field aslinya.
+     *
+     * Field dipisahkan tepat satu spasi agar field kosong tetap terbaca.
+     *
+     * @param line Baris pesan.
+     * @return Field-field pesan.
+     * @throws IllegalArgumentException Jika baris berisi escape persen yang tidak valid.
+     */
+    public static String[] decode(String line) {
+        String[] fields = line.split(" ", -1);
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = URLDecoder.decode(fields[i], StandardCharsets.UTF_8);
+        }
+        return fields;
+    }
+/**
+     * Mengubah transaksi menjadi field-field pesan.
+     *
+     * @param transaction Transaksi yang akan di-encode.
+     * @return Field ID, total harga, metode pembayaran, lalu ID, nama, dan harga setiap item.
+     */
+    public static List<String> transactionFields(Transaction transaction) {
+        List<String> fields = new ArrayList<>();
+        fields.add(transaction.getId());
+        fields.add(String.valueOf(transaction.getTotalPrice()));
+        fields.add(transaction.getPaymentMethod().getMethodName());
+        for (Item item : transaction.getItems()) {
+            fields.add(item.getId());
+            fields.add(item.getName());
+            fields.add(String.valueOf(item.getPrice()));
+        }
+        return fields;
+    }
+/**
+     * Membentuk kembali transaksi dari field-field hasil transactionFields.
+     *
+     * @param fields Field-field pesan.
+     * @param offset Posisi field pertama milik transaksi.
+     * @return Transaksi hasil decode.
+     */
+    public static Transaction parseTransaction(String[] fields, int offset) {
+        List<Item> items = new ArrayList<>();
+        for (int i = offset + 3; i + 2 < fields.length; i += 3) {
+            items.add(new Item(fields[i], fields[i + 1], Double.parseDouble(fields[i + 2])));
+        }
+        return new Transaction(fields[offset], items, Double.parseDouble(fields[offset + 1]), paymentMethodFor(fields[offset + 2]));
+    }
+/**
+     * Mendapatkan metode pembayaran berdasarkan namanya.
+     *
+     * @param methodName Nama metode pembayaran; huruf besar/kecil tidak dibedakan.
+     * @return Metode pembayaran yang sesuai, atau UnknownPayment jika tidak dikenal.
+     */
+    public static PaymentMethod paymentMethodFor(String methodName) {
+        switch (methodName.toUpperCase(Locale.ROOT)) {
+            case "BANK":
+                return new BankPayment();
+            case "COD":
+                return new CODPayment();
+            case "QRIS":
+                return new QRISPayment();
+            default:
+                return new UnknownPayment();
+        }
+    }
+}
+/**
+ * Kelas yang menjalankan satu shard toko online sebagai proses terpisah.
+ * Shard menyimpan keranjang dan transaksi pengguna yang dipetakan kepadanya,
+ * serta salinan katalog yang diperbarui oleh router. Shard hanya mendengarkan
+ * di loopback dan menerima username apa adanya; token sesi diperiksa oleh router.
+ */
+class ShopShard {
+    private final int port;
+    private String lastRouterId;
+    private long lastCatalogSequence;
+    private String lastCatalogReply;
+/**
+     * Konstruktor untuk membuat shard yang mendengarkan pada port lokal tertentu.
+     *
+     * @param port Port lokal untuk shard ini.
+     */
+    public ShopShard(int port) {
+        this.port = port;
+    }
+/**
+     * Menyiapkan data awal lalu melayani permintaan dari router sampai proses dihentikan.
+     *
+     * @throws IOException Jika socket shard gagal dibuka.
+     */
+    public void serve() throws IOException {
+        new OnlineShoppingAppSystem();
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Shard listening on port " + port);
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> handleConnection(socket), "shard-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] request;
+                try {
+                    request = ShopProtocol.decode(line);
+                } catch (IllegalArgumentException e) {
+                    out.println(ShopProtocol.encode("ERR", "Malformed request: " + e.getMessage()));
+                    continue;
+                }
+                out.println(handle(request));
+            }
+        } catch (IOException e) {
+            System.out.println("Shard connection closed: " + e.getMessage());
+        }
+    }
+/**
+     * Memproses satu permintaan dan menghasilkan satu baris balasan.
+     *
+     * @param request Field-field permintaan; field pertama adalah nama perintah.
+     * @return Baris balasan yang diawali OK atau ERR.
+     */
+    String handle(String[] request) {
+        try {
+            switch (request[0]) {
+                case "ADD_ITEM":
+                    ItemList.getInstance().addItem(new Item(request[1], request[2], Double.parseDouble(request[3])));
+                    return ShopProtocol.encode("OK");
+                case "EDIT_ITEM":
+                    if (!ItemList.getInstance().updateItem(request[1], request[2], Double.parseDouble(request[3]))) {
+                        return ShopProtocol.encode("ERR", "Item not found with ID: " + request[1]);
+                    }
+                    return ShopProtocol.encode("OK");
+                case "REMOVE_ITEM":
+                    if (!ItemList.getInstance().removeItem(request[1])) {
+                        return ShopProtocol.encode("ERR", "Item not found with ID: " + request[1]);
+                    }
+                    return ShopProtocol.encode("OK");
+                case "CATALOG":
+                    return applyCatalogWrite(request);
+                case "ITEMS":
+                    return ShopProtocol.encode("OK", CatalogListingCache.getInstance().getListing());
+                case "LOGIN": {
+                    if (UserList.getInstance().authenticate(request[1], request[2], UserList.ROLE_REGULAR) != null) {
+                        return ShopProtocol.encode("OK");
+                    }
+                    return ShopProtocol.encode("ERR", "Invalid regular user username or password.");
+                }
+                case "ADMIN_LOGIN": {
+                    if (UserList.getInstance().authenticate(request[1], request[2], UserList.ROLE_ADMIN) != null) {
+                        return ShopProtocol.encode("OK");
+                    }
+                    return ShopProtocol.encode("ERR", "Invalid admin username or password.");
+                }
+                case "ADD_TO_CART": {
+                    RegularUser user = findRegularUser(request[1]);
+                    if (user == null) {
+                        return ShopProtocol.encode("ERR", "Unknown user: " + request[1]);
+                    }
+                    if (!ItemList.getInstance().addItemToCart(request[2], user)) {
+                        return ShopProtocol.encode("ERR", "Item not found with ID: " + request[2]);
+                    }
+                    return ShopProtocol.encode("OK");
+                }
+                case "CHECKOUT": {
+                    RegularUser user = findRegularUser(request[1]);
+                    if (user == null) {
+                        return ShopProtocol.encode("ERR", "Unknown user: " + request[1]);
+                    }
+                    return checkout(user, ShopProtocol.paymentMethodFor(request[2]));
+                }
+                default:
+                    return ShopProtocol.encode("ERR", "Unknown command: " + request[0]);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            return ShopProtocol.encode("ERR", "Malformed request: " + e.getMessage());
+        }
+    }
+
+/**
+     * Menjalankan perubahan katalog bernomor urut dari router. Router dapat mengirim ulang
+     * perubahan yang balasannya tidak sempat diterima (misalnya karena batas waktu baca),
+     * sehingga perubahan dengan nomor yang sudah dijalankan hanya dibalas ulang.
+     *
+     * @param request "CATALOG", ID router, nomor urut, lalu perintah katalog beserta argumennya.
+     */
+    private synchronized String applyCatalogWrite(String[] request) {
+        String routerId = request[1];
+        long sequence = Long.parseLong(request[2]);
+        if (routerId.equals(lastRouterId) && sequence <= lastCatalogSequence) {
+            return sequence == lastCatalogSequence ? lastCatalogReply : ShopProtocol.encode("OK");
+        }
+        String[] write = Arrays.copyOfRange(request, 3, request.length);
+        if (!write[0].equals("ADD_ITEM") && !write[0].equals("EDIT_ITEM") && !write[0].equals("REMOVE_ITEM")) {
+            return ShopProtocol.encode("ERR", "Not a catalog command: " + write[0]);
+        }
+        String reply = handle(write);
+        lastRouterId = routerId;
+        lastCatalogSequence = sequence;
+        lastCatalogReply = reply;
+        return reply;
+    }
+
+    private RegularUser findRegularUser(String username) {
+        User user = UserList.getInstance().getUser(username);
+        return user instanceof RegularUser ? (RegularUser) user : null;
+    }
+
+    private String checkout(RegularUser user, PaymentMethod paymentMethod) {
+        ItemList.getInstance().refreshCart(user);
+        List<Item> cart = ItemList.getInstance().getItemsInCart(user);
+        if (cart.isEmpty()) {
+            return ShopProtocol.encode("ERR", "Your cart is empty. Cannot proceed to checkout.");
+        }
+        double totalPrice = 0;
+        for (Item item : cart) {
+            totalPrice += item.getPrice();
+        }
+        totalPrice -= PromotionEngine.getInstance().calculateDiscount(cart, paymentMethod);
+
+        Transaction transaction = new Transaction(UUID.randomUUID().toString(), new ArrayList<>(cart), totalPrice, paymentMethod);
+        try {
+            CheckoutQueue.getInstance().submit(user, transaction).join();
+        } catch (CompletionException e) {
+            return ShopProtocol.encode("ERR", "Checkout failed: " + e.getCause().getMessage());
+        }
+        return ShopProtocol.encode("OK", transaction.getId(), String.valueOf(totalPrice));
+    }
+}
+/**
+ * Kelas router tipis yang meneruskan permintaan ke shard melalui socket lokal.
+ * Permintaan pengguna diarahkan berdasarkan hash username, perubahan katalog
+ * dikirim ke semua shard, dan pembacaan katalog dilayani bergantian oleh shard.
+ * Perubahan katalog yang belum diterima sebuah shard disimpan dalam antrean
+ * shard tersebut dan dikirim ulang sebelum permintaan lain diteruskan ke sana,
+ * sehingga semua salinan katalog menerima perubahan yang sama dengan urutan yang sama.
+ * Setiap shard punya lock sendiri untuk antreannya, dan koneksi ke shard memakai batas
+ * waktu connect dan baca (system property router.connectTimeoutMillis dan
+ * router.readTimeoutMillis), sehingga shard yang macet tidak menahan shard lain.
+ * <p>
+ * Klien harus login terlebih dahulu: "LOGIN &lt;username&gt; &lt;password&gt;" untuk pengguna
+ * reguler atau "ADMIN_LOGIN &lt;username&gt; &lt;password&gt;" untuk admin, yang dibalas
+ * "OK &lt;token&gt;". Semua perintah lain membawa token tersebut sebagai field kedua:
+ * "ITEMS &lt;token&gt;", "ADD_TO_CART &lt;token&gt; &lt;id&gt;", "CHECKOUT &lt;token&gt; &lt;metode&gt;",
+ * "ADD_ITEM &lt;token&gt; &lt;id&gt; &lt;nama&gt; &lt;harga&gt;", "EDIT_ITEM &lt;token&gt; &lt;id&gt; &lt;nama&gt; &lt;harga&gt;",
+ * "REMOVE_ITEM &lt;token&gt; &lt;id&gt;", dan "LOGOUT &lt;token&gt;". Perubahan katalog hanya
+ * diterima dari sesi admin, dan perintah keranjang dijalankan atas nama pemilik sesi.
+ */
+class ShardRouter {
+    private static final int SEND_ATTEMPTS = 2;
+    private static final int CONNECT_TIMEOUT_MILLIS = Integer.getInteger("router.connectTimeoutMillis", 1000);
+    private static final int READ_TIMEOUT_MILLIS = Integer.getInteger("router.readTimeoutMillis", 5000);
+    private final SecureRandom random = new SecureRandom();
+    private final String routerId = newToken();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final int[] shardPorts;
+    private final ShardConnection[] connections;
+    private final List<Queue<CatalogWrite>> pendingCatalogWrites;
+    private final Object[] shardLocks;
+    private final Object appendLock = new Object();
+    private long catalogSequence;
+    private int nextCatalogShard;
+/**
+     * Konstruktor untuk membuat router dengan daftar port shard.
+     *
+     * @param shardPorts Port lokal dari setiap shard, berurutan sesuai nomor shard.
+     */
+    public ShardRouter(int[] shardPorts) {
+        if (shardPorts.length == 0) {
+            throw new IllegalArgumentException("At least one shard port is required");
+        }
+        this.shardPorts = shardPorts.clone();
+        this.connections = new ShardConnection[shardPorts.length];
+        this.pendingCatalogWrites = new ArrayList<>();
+        this.shardLocks = new Object[shardPorts.length];
+        for (int i = 0; i < shardPorts.length; i++) {
+            pendingCatalogWrites.add(new ConcurrentLinkedQueue<>());
+            shardLocks[i] = new Object();
+        }
+    }
+/**
+     * Mengubah daftar port yang dipisahkan koma menjadi array.
+     *
+     * @param ports Daftar port, misalnya "7001,7002".
+     * @return Array port shard.
+     */
+    public static int[] parsePorts(String ports) {
+        String[] parts = ports.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseInt(parts[i].trim());
+        }
+        return result;
+    }
+/**
+     * Menentukan nomor shard untuk seorang pengguna.
+     *
+     * @param username Username dari pengguna.
+     * @return Nomor shard yang menyimpan data pengguna tersebut.
+     */
+    public int shardFor(String username) {
+        return Math.floorMod(username.hashCode(), shardPorts.length);
+    }
+/**
+     * Menerima koneksi klien pada port lokal dan meneruskan setiap permintaannya.
+     *
+     * @param port Port lokal untuk router.
+     * @throws IOException Jika socket router gagal dibuka.
+     */
+    public void serve(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Router listening on port " + port + " for " + shardPorts.length + " shards");
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> handleClient(socket), "router-client");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+    }
+
+    private void handleClient(Socket socket) {
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    out.println(route(line));
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Router client closed: " + e.getMessage());
+        }
+    }
+/**
+     * Meneruskan satu baris permintaan ke shard yang tepat.
+     *
+     * @param line Baris permintaan dari klien.
+     * @return Baris balasan dari shard.
+     */
+    String route(String line) {
+        String[] request;
+        try {
+            request = ShopProtocol.decode(line);
+        } catch (IllegalArgumentException e) {
+            return ShopProtocol.encode("ERR", "Malformed request: " + e.getMessage());
+        }
+        if (request.length < 2) {
+            return ShopProtocol.encode("ERR", "Malformed request: missing session token or username");
+        }
+        try {
+            switch (request[0]) {
+                case "LOGIN":
+                case "ADMIN_LOGIN":
+                    return login(request, line);
+                case "LOGOUT":
+                    sessions.remove(request[1]);
+                    return ShopProtocol.encode("OK");
+                case "ADD_ITEM":
+                case "EDIT_ITEM":
+                case "REMOVE_ITEM": {
+                    Session session = sessions.get(request[1]);
+                    if (session == null || !session.admin) {
+                        return ShopProtocol.encode("ERR", "Admin login required.");
+                    }
+                    return broadcast(withoutToken(request));
+                }
+                case "ITEMS":
+                    if (sessions.get(request[1]) == null) {
+                        return ShopProtocol.encode("ERR", "Login required.");
+                    }
+                    return readCatalog(ShopProtocol.encode(withoutToken(request)));
+                case "ADD_TO_CART":
+                case "CHECKOUT": {
+                    Session session = sessions.get(request[1]);
+                    if (session == null || session.admin) {
+                        return ShopProtocol.encode("ERR", "Regular user login required.");
+                    }
+                    String[] forwarded = request.clone();
+                    forwarded[1] = session.username;
+                    int shard = shardFor(session.username);
+                    catchUp(shard);
+                    return send(shard, ShopProtocol.encode(forwarded));
+                }
+                default:
+                    return ShopProtocol.encode("ERR", "Unknown command: " + request[0]);
+            }
+        } catch (IOException e) {
+            return ShopProtocol.encode("ERR", "Shard unavailable: " + e.getMessage());
+        }
+    }
+/**
+     * Memeriksa username dan password di shard milik pengguna, lalu membuat sesi baru.
+     *
+     * @return Balasan "OK &lt;token&gt;" jika login berhasil, atau balasan ERR dari shard.
+     */
+    private String login(String[] request, String line) throws IOException {
+        int shard = shardFor(request[1]);
+        catchUp(shard);
+        String reply = send(shard, line);
+        if (!reply.equals(ShopProtocol.encode("OK"))) {
+            return reply;
+        }
+        String token = newToken();
+        sessions.put(token, new Session(request[1], request[0].equals("ADMIN_LOGIN")));
+        return ShopProtocol.encode("OK", token);
+    }
+
+    private String newToken() {
+        byte[] tokenBytes = new byte[16];
+        random.nextBytes(tokenBytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+    }
+
+    private static String[] withoutToken(String[] request) {
+        String[] forwarded = new String[request.length - 1];
+        forwarded[0] = request[0];
+        System.arraycopy(request, 2, forwarded, 1, request.length - 2);
+        return forwarded;
+    }
+/**
+     * Mengirim perubahan katalog ke semua shard. Perubahan dimasukkan ke antrean semua
+     * shard di bawah satu lock singkat tanpa I/O agar urutannya sama di setiap shard,
+     * lalu setiap antrean dikirim di bawah lock shard masing-masing. Shard yang tidak
+     * dapat dihubungi menyimpan perubahan dalam antreannya dan menerimanya saat dihubungi lagi.
+     * Setiap perubahan diberi ID router dan nomor urut agar shard mengabaikan kiriman ulang.
+     */
+    private String broadcast(String[] command) {
+        List<CatalogWrite> writes = new ArrayList<>(shardPorts.length);
+        synchronized (appendLock) {
+            String[] fields = new String[command.length + 3];
+            fields[0] = "CATALOG";
+            fields[1] = routerId;
+            fields[2] = String.valueOf(++catalogSequence);
+            System.arraycopy(command, 0, fields, 3, command.length);
+            String line = ShopProtocol.encode(fields);
+            for (Queue<CatalogWrite> pending : pendingCatalogWrites) {
+                CatalogWrite write = new CatalogWrite(line);
+                writes.add(write);
+                pending.add(write);
+            }
+        }
+        String reply = null;
+        List<Integer> applied = new ArrayList<>();
+        List<Integer> queued = new ArrayList<>();
+        for (int shard = 0; shard < shardPorts.length; shard++) {
+            try {
+                flushCatalogWrites(shard);
+            } catch (IOException e) {
+                // perubahan tetap di antrean shard ini
+            }
+            String shardReply = writes.get(shard).reply;
+            if (shardReply == null) {
+                queued.add(shard);
+                continue;
+            }
+            applied.add(shard);
+            if (reply == null || !shardReply.startsWith("OK")) {
+                reply = shardReply;
+            }
+        }
+        if (!queued.isEmpty()) {
+            return ShopProtocol.encode("ERR", "Catalog write applied on shards " + applied
+                    + "; queued for shards " + queued + " until they are reachable");
+        }
+        return reply;
+    }
+/**
+     * Membaca katalog dari shard secara bergantian, melewati shard yang belum menerima semua perubahan katalog.
+     */
+    private String readCatalog(String line) throws IOException {
+        IOException lastError = null;
+        for (int attempt = 0; attempt < shardPorts.length; attempt++) {
+            int shard = nextCatalogShard();
+            try {
+                catchUp(shard);
+                return send(shard, line);
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private void catchUp(int shard) throws IOException {
+        if (!pendingCatalogWrites.get(shard).isEmpty()) {
+            flushCatalogWrites(shard);
+        }
+    }
+/**
+     * Mengirim antrean perubahan katalog sebuah shard secara berurutan di bawah lock shard tersebut.
+     * Perubahan hanya dihapus dari antrean setelah shard membalas, dan balasannya disimpan
+     * pada perubahan itu untuk thread yang mengirimkannya.
+     */
+    private void flushCatalogWrites(int shard) throws IOException {
+        Queue<CatalogWrite> pending = pendingCatalogWrites.get(shard);
+        synchronized (shardLocks[shard]) {
+            CatalogWrite write;
+            while ((write = pending.peek()) != null) {
+                write.reply = sendWithRetry(shard, write.line);
+                pending.poll();
+            }
+        }
+    }
+/**
+     * Mengirim ulang sekali jika koneksi lama ternyata sudah putus. Batas waktu baca
+     * tidak diulang karena shard mungkin sudah menerima permintaannya.
+     */
+    private String sendWithRetry(int shard, String line) throws IOException {
+        IOException lastError = null;
+        for (int attempt = 0; attempt < SEND_ATTEMPTS; attempt++) {
+            try {
+                return send(shard, line);
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        throw lastError;
+    }
+
+    private synchronized int nextCatalogShard() {
+        int shard = nextCatalogShard;
+        nextCatalogShard = (nextCatalogShard + 1) % shardPorts.length;
+        return shard;
+    }
+
+    private String send(int shard, String line) throws IOException {
+        ShardConnection connection;
+        synchronized (connections) {
+            connection = connections[shard];
+        }
+        if (connection == null) {
+            ShardConnection opened = new ShardConnection(shardPorts[shard]);
+            synchronized (connections) {
+                if (connections[shard] == null) {
+                    connections[shard] = opened;
+                }
+                connection = connections[shard];
+            }
+            if (connection != opened) {
+                opened.close();
+            }
+        }
+        try {
+            return connection.request(line);
+        } catch (IOException e) {
+            synchronized (connections) {
+                if (connections[shard] == connection) {
+                    connections[shard] = null;
+                }
+            }
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static class CatalogWrite {
+        private final String line;
+        private volatile String reply;
+
+        CatalogWrite(String line) {
+            this.line = line;
+        }
+    }
+
+    private static class Session {
+        private final String username;
+        private final boolean admin;
+
+        Session(String username, boolean admin) {
+            this.username = username;
+            this.admin = admin;
+        }
+    }
+
+    private static class ShardConnection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        ShardConnection(int port) throws IOException {
+            socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MILLIS);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        }
+
+        synchronized String request(String line) throws IOException {
+            out.println(line);
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new EOFException("shard closed the connection");
+            }
+            return reply;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // koneksi sudah tidak dapat digunakan
+            }
+        }
+    }
+}
+/**
+ * Kelas yang mengirim setiap perubahan data toko ke proses cadangan (hot standby)
+ * melalui socket lokal. Setiap perubahan diberi nomor urut dan waktu, dan proses
+ * cadangan membalas dengan ACK sehingga lag replikasi dapat diukur.
+ * <p>
+ * Setiap ACK memperpanjang lease selama LEASE_MILLIS, yang lebih pendek dari waktu
+ * standby mengambil alih. Perubahan yang terjadi setelah lease habis menunggu balasan
+ * standby paling lama LEASE_WAIT_MILLIS; jika standby mengirim FENCE atau tetap diam,
+ * proses ini berhenti sebelum perubahan tersebut dikonfirmasi kepada pengguna.
+ */
+class ReplicationPublisher implements ItemListListener, TransactionListener {
+    static final long HEARTBEAT_MILLIS = 200;
+    static final long LEASE_MILLIS = 500;
+    static final long LEASE_WAIT_MILLIS = 1000;
+    private static volatile ReplicationPublisher instance;
+    private final Socket socket;
+    private final PrintWriter out;
+    private final BufferedReader in;
+    private final BlockingQueue<String> outbox;
+    private final ConcurrentSkipListMap<Long, Long> unacknowledged;
+    private long sequence;
+    private volatile long acknowledgedSequence;
+    private volatile long lastStandbyContactNanos;
+    private volatile boolean connected;
+
+    private ReplicationPublisher(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        outbox = new LinkedBlockingQueue<>();
+        unacknowledged = new ConcurrentSkipListMap<>();
+        lastStandbyContactNanos = System.nanoTime();
+        connected = true;
+    }
+/**
+     * Menghubungkan ke proses cadangan lalu mulai mereplikasi.
+     * Isi katalog dan transaksi yang sudah ada dikirim terlebih dahulu.
+     *
+     * @param port Port lokal dari proses cadangan.
+     * @return Publisher yang aktif.
+     * @throws IOException Jika koneksi ke proses cadangan gagal.
+     */
+    public static synchronized ReplicationPublisher start(int port) throws IOException {
+        ReplicationPublisher publisher = new ReplicationPublisher(port);
+        ItemList.getInstance().addListener(publisher);
+        TransactionList.getInstance().addListener(publisher);
+
+        Thread sender = new Thread(publisher::sendLoop, "replication-sender");
+        sender.setDaemon(true);
+        sender.start();
+        Thread ackReader = new Thread(publisher::ackLoop, "replication-acks");
+        ackReader.setDaemon(true);
+        ackReader.start();
+
+        instance = publisher;
+        return publisher;
+    }
+/**
+     * Mengembalikan publisher yang aktif.
+     *
+     * @return Publisher yang aktif, atau null jika replikasi tidak diaktifkan.
+     */
+    public static ReplicationPublisher getInstance() {
+        return instance;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+/**
+     * Mendapatkan jumlah perubahan yang belum dikonfirmasi oleh proses cadangan.
+     *
+     * @return Jumlah perubahan yang belum di-ACK.
+     */
+    public synchronized long getPendingCount() {
+        return sequence - acknowledgedSequence;
+    }
+/**
+     * Mendapatkan lag replikasi, yaitu umur perubahan tertua yang belum dikonfirmasi.
+     *
+     * @return Lag replikasi dalam milidetik, 0 jika semua perubahan sudah dikonfirmasi.
+     */
+    public long getLagMillis() {
+        Map.Entry<Long, Long> oldest = unacknowledged.firstEntry();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.getValue();
+    }
+
+    @Override
+    public void itemAdded(Item item) {
+        publish("ITEM_ADD", item.getId(), item.getName(), String.valueOf(item.getPrice()));
+    }
+
+    @Override
+    public void itemRemoved(String itemId) {
+        publish("ITEM_REMOVE", itemId);
+    }
+
+    @Override
+    public void itemEdited(Item item) {
+        publish("ITEM_EDIT", item.getId(), item.getName(), String.valueOf(item.getPrice()));
+    }
+
+    @Override
+    public void itemsEdited(List<Item> items) {
+        String[] fields = new String[1 + items.size() * 3];
+        fields[0] = "ITEMS_EDIT";
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            fields[1 + i * 3] = item.getId();
+            fields[2 + i * 3] = item.getName();
+            fields[3 + i * 3] = String.valueOf(item.getPrice());
+        }
+        publish(fields);
+    }
+
+    @Override
+    public void cartItemAdded(RegularUser user, Item item) {
+        publish("CART_ADD", user.getUsername(), item.getId());
+    }
+
+    @Override
+    public void cartCleared(RegularUser user) {
+        publish("CART_CLEAR", user.getUsername());
+    }
+
+    @Override
+    public void transactionAdded(Transaction transaction) {
+        List<String> fields = ShopProtocol.transactionFields(transaction);
+        fields.add(0, "TXN");
+        publish(fields.toArray(new String[0]));
+    }
+
+    private synchronized void publish(String... fields) {
+        if (!connected) {
+            return;
+        }
+        if (leaseExpired()) {
+            awaitStandby();
+            if (!connected) {
+                return;
+            }
+        }
+        long now = System.currentTimeMillis();
+        sequence++;
+        unacknowledged.put(sequence, now);
+        outbox.add(frame(sequence, now, fields));
+    }
+
+    private boolean leaseExpired() {
+        return System.nanoTime() - lastStandbyContactNanos > TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS);
+    }
+/**
+     * Menunggu balasan standby setelah lease habis. Jika standby mengirim FENCE,
+     * ackLoop menghentikan proses ini; jika standby tetap diam, standby mungkin sudah
+     * mengambil alih sehingga proses ini berhenti sendiri.
+     */
+    private void awaitStandby() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LEASE_WAIT_MILLIS);
+        try {
+            while (connected && leaseExpired()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    System.out.println("Replication lease expired and the standby did not answer. Shutting down this primary.");
+                    System.exit(1);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while waiting for the standby lease. Shutting down this primary.");
+            System.exit(1);
+        }
+    }
+
+    private static String frame(long sequence, long timestamp, String... fields) {
+        String[] framed = new String[fields.length + 2];
+        framed[0] = String.valueOf(sequence);
+        framed[1] = String.valueOf(timestamp);
+        System.arraycopy(fields, 0, framed, 2, fields.length);
+        return ShopProtocol.encode(framed);
+    }
+
+    private void sendLoop() {
+        try {
+            while (connected) {
+                String line = outbox.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                if (line == null) {
+                    line = frame(0, System.currentTimeMillis(), "HEARTBEAT");
+                }
+                out.println(line);
+                if (out.checkError()) {
+                    disconnect("Standby connection lost.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ackLoop() {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = ShopProtocol.decode(line);
+                if (fields.length == 2 && fields[0].equals("ACK")) {
+                    long acknowledged = Long.parseLong(fields[1]);
+                    acknowledgedSequence = acknowledged;
+                    unacknowledged.headMap(acknowledged, true).clear();
+                    lastStandbyContactNanos = System.nanoTime();
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                } else if (fields[0].equals("FENCE")) {
+                    // Standby sudah mengambil alih; primary harus berhenti agar tidak ada dua toko yang menerima perubahan.
+                    System.out.println("Fenced by standby. Shutting down this primary.");
+                    System.exit(1);
+                }
+            }
+            disconnect("Standby connection closed.");
+        } catch (IOException e) {
+            disconnect("Standby connection lost: " + e.getMessage());
+        } catch (RuntimeException e) {
+            disconnect("Invalid message from standby: " + e.getMessage());
+        }
+    }
+/**
+     * Memutus replikasi. Setelah terputus tidak ada lagi perubahan yang diantrekan,
+     * sehingga antrean tidak terus membesar selama primary berjalan.
+     */
+    private synchronized void disconnect(String reason) {
+        if (connected) {
+            connected = false;
+            notifyAll();
+            outbox.clear();
+            unacknowledged.clear();
+            System.out.println(reason);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // socket sudah tertutup
+            }
+        }
+    }
+}
+/**
+ * Kelas yang menjalankan proses cadangan (hot standby).
+ * Proses ini menerapkan setiap perubahan dari proses utama secara berurutan dan
+ * membalas setiap pesan (termasuk heartbeat) dengan ACK. Jika proses utama tidak
+ * mengirim apa pun selama 600 ms, standby berhenti membalas, mengirim pesan FENCE,
+ * lalu menunggu paling lama 300 ms agar koneksinya tertutup sebelum mengambil alih,
+ * sehingga pengambilalihan terjadi kurang dari satu detik setelah pesan terakhir.
+ * <p>
+ * Proses utama yang macet (misalnya SIGSTOP atau jeda GC panjang) tidak dapat
+ * menutup koneksi, sehingga standby tetap mengambil alih setelah batas waktu tersebut.
+ * Agar tidak ada dua toko yang menerima perubahan, proses utama memegang lease dari
+ * ACK standby (lihat ReplicationPublisher): lease lebih pendek dari batas waktu
+ * pengambilalihan, dan proses utama tidak menerima perubahan baru setelah lease-nya
+ * habis. Akibatnya, standby yang macet lebih dari satu detik juga menghentikan proses utama.
+ */
+class StandbyServer {
+    private static final int TAKEOVER_TIMEOUT_MILLIS = 600;
+    private static final int FENCE_GRACE_MILLIS = 300;
+    private static final long STATUS_INTERVAL_MILLIS = 5000;
+    private final int port;
+    private volatile long appliedSequence;
+    private volatile long lastPrimaryTimestamp;
+    private long fenceDeadline;
+/**
+     * Konstruktor untuk membuat proses cadangan yang mendengarkan pada port lokal tertentu.
+     *
+     * @param port Port lokal untuk menerima replikasi.
+     */
+    public StandbyServer(int port) {
+        this.port = port;
+    }
+/**
+     * Menerima replikasi dari proses utama lalu mengambil alih saat proses utama hilang.
+     *
+     * @throws IOException Jika socket proses cadangan gagal dibuka.
+     */
+    public void serve() throws IOException {
+        OnlineShoppingAppSystem.initializeUsers();
+        try (ServerSocket serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            System.out.println("Standby waiting for primary on port " + port);
+            try (Socket primary = serverSocket.accept()) {
+                primary.setSoTimeout(TAKEOVER_TIMEOUT_MILLIS);
+                primary.setTcpNoDelay(true);
+                if (!replicate(primary)) {
+                    System.out.println("Standby is out of sync and will not take over. Restart it to resynchronize.");
+                    return;
+                }
+            }
+        }
+        System.out.println("Primary unavailable. Standby taking over at sequence " + appliedSequence + ".");
+        OnlineShoppingAppSystem appSystem = new OnlineShoppingAppSystem();
+        appSystem.run();
+    }
+/**
+     * Mendapatkan nomor urut perubahan terakhir yang sudah diterapkan.
+     *
+     * @return Nomor urut terakhir yang diterapkan.
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+/**
+     * Mendapatkan lag replikasi, yaitu selisih waktu sekarang dengan waktu pesan terakhir dari proses utama.
+     *
+     * @return Lag replikasi dalam milidetik.
+     */
+    public long getLagMillis() {
+        return System.currentTimeMillis() - lastPrimaryTimestamp;
+    }
+
+/**
+     * Menerapkan replikasi sampai koneksi dari proses utama tertutup.
+     *
+     * @return true jika standby boleh mengambil alih, false jika ada record yang gagal diterapkan.
+     */
+    private boolean replicate(Socket primary) {
+        long nextStatus = System.currentTimeMillis() + STATUS_INTERVAL_MILLIS;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(primary.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(primary.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            String line;
+            while ((line = readFromPrimary(primary, in, out)) != null) {
+                String[] fields = ShopProtocol.decode(line);
+                long sequence = Long.parseLong(fields[0]);
+                lastPrimaryTimestamp = Long.parseLong(fields[1]);
+                if (sequence > 0) {
+                    apply(fields);
+                    appliedSequence = sequence;
+                }
+                if (fenceDeadline == 0) {
+                    out.println(ShopProtocol.encode("ACK", String.valueOf(appliedSequence)));
+                }
+                if (System.currentTimeMillis() >= nextStatus) {
+                    System.out.println("Replication lag (ms): " + getLagMillis() + " | applied sequence: " + appliedSequence);
+                    nextStatus = System.currentTimeMillis() + STATUS_INTERVAL_MILLIS;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Primary connection lost: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("Replication stopped on an invalid record: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+/**
+     * Membaca satu baris dari proses utama. Jika heartbeat tidak datang tepat waktu,
+     * proses utama di-fence dan record yang masih terkirim tetap diterapkan sampai
+     * koneksi tertutup atau masa tenggang fence habis.
+     *
+     * @return Baris berikutnya, atau null jika standby boleh mengambil alih.
+     */
+    private String readFromPrimary(Socket primary, BufferedReader in, PrintWriter out) throws IOException {
+        if (fenceDeadline == 0) {
+            try {
+                return in.readLine();
+            } catch (SocketTimeoutException e) {
+                System.out.println("No heartbeat from primary for " + TAKEOVER_TIMEOUT_MILLIS + " ms. Fencing primary.");
+                out.println(ShopProtocol.encode("FENCE"));
+                fenceDeadline = System.currentTimeMillis() + FENCE_GRACE_MILLIS;
+            }
+        }
+        long remaining = fenceDeadline - System.currentTimeMillis();
+        try {
+            if (remaining > 0) {
+                primary.setSoTimeout((int) remaining);
+                return in.readLine();
+            }
+        } catch (SocketTimeoutException e) {
+            // masa tenggang habis
+        }
+        System.out.println("Primary did not close its connection within " + FENCE_GRACE_MILLIS + " ms after fencing.");
+        return null;
+    }
+
+    private void apply(String[] fields) {
+        ItemList itemList = ItemList.getInstance();
+        switch (fields[2]) {
+            case "ITEM_ADD":
+                itemList.addItem(new Item(fields[3], fields[4], Double.parseDouble(fields[5])));
+                break;
+            case "ITEM_REMOVE":
+                itemList.removeItem(fields[3]);
+                break;
+            case "ITEM_EDIT":
+                itemList.updateItem(fields[3], fields[4], Double.parseDouble(fields[5]));
+                break;
+            case "ITEMS_EDIT": {
+                List<Item> editedItems = new ArrayList<>();
+                for (int i = 3; i + 2 < fields.length; i += 3) {
+                    editedItems.add(new Item(fields[i], fields[i + 1], Double.parseDouble(fields[i + 2])));
+                }
+                itemList.updateItems(editedItems);
+                break;
+            }
+            case "CART_ADD": {
+                User user = UserList.getInstance().getUser(fields[3]);
+                if (user instanceof RegularUser) {
+                    itemList.addItemToCart(fields[4], (RegularUser) user);
+                }
+                break;
+            }
+            case "CART_CLEAR": {
+                User user = UserList.getInstance().getUser(fields[3]);
+                if (user instanceof RegularUser) {
+                    itemList.clearCart((RegularUser) user);
+                }
+                break;
+            }
+            case "TXN":
+                TransactionList.getInstance().addTransaction(ShopProtocol.parseTransaction(fields, 3));
+                break;
+            default:
+                System.out.println("Ignoring unknown replication record: " + fields[2]);
+                break;
+        }
+    }
+}
+/**
+ * Kelas yang menyimpan checkpoint data toko secara berkala di latar belakang.
+ * Checkpoint inkremental hanya berisi item, keranjang, pengguna, dan transaksi
+ * yang berubah sejak checkpoint sebelumnya. Setiap beberapa checkpoint ditulis
+ * checkpoint penuh dan file lama dihapus, sehingga pemulihan cukup membaca satu
+ * checkpoint penuh ditambah sejumlah kecil checkpoint inkremental.
+ * Interval dan jumlah inkremental dapat diatur melalui system property
+ * checkpoint.intervalMillis dan checkpoint.fullEvery.
+ */
+class Checkpointer implements ItemListListener {
+    private static final String FILE_PREFIX = "checkpoint-";
+    private static final String FILE_SUFFIX = ".log";
+    private final Path directory;
+    private final int fullEvery;
+    private final Set<String> dirtyItemIds;
+    private final Set<RegularUser> dirtyCartUsers;
+    private long sequence;
+    private int incrementalsSinceFull;
+    private boolean hasFull;
+    private long lastUserVersion = -1;
+    private int lastTransactionCount;
+
+    private Checkpointer(Path directory, int fullEvery, long lastSequence) {
+        this.directory = directory;
+        this.fullEvery = Math.max(1, fullEvery);
+        this.dirtyItemIds = new LinkedHashSet<>();
+        this.dirtyCartUsers = new LinkedHashSet<>();
+        this.sequence = lastSequence;
+    }
+/**
+     * Memulai checkpoint berkala ke direktori tertentu.
+     * Checkpoint pertama selalu checkpoint penuh, dan checkpoint terakhir ditulis saat proses berhenti.
+     *
+     * @param directory Direktori tempat file checkpoint disimpan.
+     * @return Checkpointer yang aktif.
+     * @throws IOException Jika direktori checkpoint tidak dapat dibuat atau dibaca.
+     */
+    public static Checkpointer start(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        if (isPosix()) {
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+        }
+        List<Path> files = listCheckpoints(directory);
+        long lastSequence = files.isEmpty() ? 0 : sequenceOf(files.get(files.size() - 1));
+
+        Checkpointer checkpointer = new Checkpointer(directory, Integer.getInteger("checkpoint.fullEvery", 16), lastSequence);
+        ItemList.getInstance().addListener(checkpointer);
+
+        long intervalMillis = Long.getLong("checkpoint.intervalMillis", 10000);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(checkpointer::checkpointQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(checkpointer::checkpointQuietly, "checkpointer-shutdown"));
+        return checkpointer;
+    }
+/**
+     * Memulihkan data toko dari checkpoint penuh terakhir dan checkpoint inkremental sesudahnya.
+     * File checkpoint yang tidak lengkap diabaikan.
+     *
+     * @param directory Direktori tempat file checkpoint disimpan.
+     * @return Jumlah file checkpoint yang diterapkan.
+     * @throws IOException Jika file checkpoint gagal dibaca.
+     */
+    public static int recover(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        List<List<String[]>> checkpoints = new ArrayList<>();
+        int lastFull = -1;
+        for (Path file : listCheckpoints(directory)) {
+            List<String[]> records = readCheckpoint(file);
+            if (records == null) {
+                continue;
+            }
+            if (records.get(0)[1].equals("FULL")) {
+                lastFull = checkpoints.size();
+            }
+            checkpoints.add(records);
+        }
+        if (lastFull < 0) {
+            return 0;
+        }
+        for (int i = lastFull; i < checkpoints.size(); i++) {
+            List<String[]> records = checkpoints.get(i);
+            for (String[] record : records.subList(1, records.size() - 1)) {
+                try {
+                    apply(record);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    System.out.println("Ignoring malformed checkpoint record " + record[0] + ": " + e.getMessage());
+                }
+            }
+        }
+        int applied = checkpoints.size() - lastFull;
+        System.out.println("Recovered shop state from " + applied + " checkpoint file(s).");
+        return applied;
+    }
+
+    @Override
+    public void itemAdded(Item item) {
+        dirtyItemIds.add(item.getId());
+    }
+
+    @Override
+    public void itemRemoved(String itemId) {
+        dirtyItemIds.add(itemId);
+    }
+
+    @Override
+    public void itemEdited(Item item) {
+        dirtyItemIds.add(item.getId());
+    }
+
+    @Override
+    public void cartItemAdded(RegularUser user, Item item) {
+        dirtyCartUsers.add(user);
+    }
+
+    @Override
+    public void cartCleared(RegularUser user) {
+        dirtyCartUsers.add(user);
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.out.println("Checkpoint failed: " + e.getMessage());
+        }
+    }
+/**
+     * Menulis satu checkpoint. Setiap penyimpanan hanya dikunci sebentar untuk
+     * menyalin data yang berubah, sehingga sesi pengguna tidak ikut berhenti.
+     * Keranjang dan transaksi disalin di bawah kunci ItemList yang sama dengan checkout,
+     * sehingga transaksi tidak pernah tercatat bersama keranjang yang sudah dibayar.
+     * File checkpoint memuat password pengguna apa adanya, jadi hanya pemilik proses yang boleh membacanya.
+     *
+     * @throws IOException Jika file checkpoint gagal ditulis.
+     */
+    public synchronized void checkpoint() throws IOException {
+        boolean full = !hasFull || incrementalsSinceFull + 1 >= fullEvery;
+        List<String> lines = new ArrayList<>();
+
+        UserList userList = UserList.getInstance();
+        long userVersion = userList.getVersion();
+        if (full || userVersion != lastUserVersion) {
+            for (User user : userList.getUsers()) {
+                lines.add(ShopProtocol.encode("USER", user.getUsername(), user.getPassword(), user instanceof Admin ? "ADMIN" : "REGULAR"));
+            }
+        }
+
+        ItemList itemList = ItemList.getInstance();
+        CatalogSnapshot catalog;
+        Set<String> drainedItemIds;
+        Set<RegularUser> drainedCartUsers;
+        Map<String, List<Item>> carts = new LinkedHashMap<>();
+        List<Transaction> transactions;
+        synchronized (itemList) {
+            catalog = itemList.getSnapshot();
+            transactions = TransactionList.getInstance().getTransactionsFrom(full ? 0 : lastTransactionCount);
+            Collection<RegularUser> cartUsers = full ? itemList.getCartUsers() : dirtyCartUsers;
+            for (RegularUser user : cartUsers) {
+                carts.put(user.getUsername(), new ArrayList<>(itemList.getItemsInCart(user)));
+            }
+            drainedItemIds = new LinkedHashSet<>(dirtyItemIds);
+            drainedCartUsers = new LinkedHashSet<>(dirtyCartUsers);
+            dirtyItemIds.clear();
+            dirtyCartUsers.clear();
+        }
+        Set<String> itemIds = drainedItemIds;
+        if (full) {
+            itemIds = new LinkedHashSet<>();
+            for (Item item : catalog.getItems()) {
+                itemIds.add(item.getId());
+            }
+        }
+        for (String itemId : itemIds) {
+            Item item = catalog.getItem(itemId);
+            if (item == null) {
+                lines.add(ShopProtocol.encode("ITEM_REMOVE", itemId));
+            } else {
+                lines.add(ShopProtocol.encode("ITEM", item.getId(), item.getName(), String.valueOf(item.getPrice())));
+            }
+        }
+        for (Map.Entry<String, List<Item>> cart : carts.entrySet()) {
+            List<String> fields = new ArrayList<>();
+            fields.add("CART");
+            fields.add(cart.getKey());
+            for (Item item : cart.getValue()) {
+                fields.add(item.getId());
+                fields.add(item.getName());
+                fields.add(String.valueOf(item.getPrice()));
+            }
+            lines.add(ShopProtocol.encode(fields.toArray(new String[0])));
+        }
+
+        for (Transaction transaction : transactions) {
+            List<String> fields = ShopProtocol.transactionFields(transaction);
+            fields.add(0, "TXN");
+            lines.add(ShopProtocol.encode(fields.toArray(new String[0])));
+        }
+
+        if (!full && lines.isEmpty()) {
+            return;
+        }
+        long checkpointSequence = sequence + 1;
+        try {
+            writeCheckpoint(checkpointSequence, full, lines);
+        } catch (IOException | RuntimeException e) {
+            restoreDirty(drainedItemIds, drainedCartUsers);
+            throw e;
+        }
+        sequence = checkpointSequence;
+        lastUserVersion = userVersion;
+        lastTransactionCount = (full ? 0 : lastTransactionCount) + transactions.size();
+        if (full) {
+            hasFull = true;
+            incrementalsSinceFull = 0;
+            deleteCheckpointsBefore(checkpointSequence);
+        } else {
+            incrementalsSinceFull++;
+        }
+    }
+
+    /**
+     * Mengembalikan ID item dan pengguna keranjang yang gagal ditulis ke daftar kotor,
+     * di depan perubahan yang masuk selama penulisan, agar checkpoint berikutnya menulisnya ulang.
+     */
+    private void restoreDirty(Set<String> itemIds, Set<RegularUser> cartUsers) {
+        synchronized (ItemList.getInstance()) {
+            itemIds.addAll(dirtyItemIds);
+            dirtyItemIds.clear();
+            dirtyItemIds.addAll(itemIds);
+            cartUsers.addAll(dirtyCartUsers);
+            dirtyCartUsers.clear();
+            dirtyCartUsers.addAll(cartUsers);
+        }
+    }
+
+    private void writeCheckpoint(long checkpointSequence, boolean full, List<String> lines) throws IOException {
+        Path target = directory.resolve(String.format("%s%012d%s", FILE_PREFIX, checkpointSequence, FILE_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        if (isPosix()) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(ShopProtocol.encode("CHECKPOINT", full ? "FULL" : "INCREMENTAL",
+                    String.valueOf(checkpointSequence), String.valueOf(System.currentTimeMillis())));
+            writer.newLine();
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.write("END");
+            writer.newLine();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    private void deleteCheckpointsBefore(long checkpointSequence) throws IOException {
+        for (Path file : listCheckpoints(directory)) {
+            if (sequenceOf(file) < checkpointSequence) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static List<Path> listCheckpoints(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(Checkpointer::sequenceOf));
+        return files;
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    private static List<String[]> readCheckpoint(Path file) throws IOException {
+        List<String[]> records = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                records.add(ShopProtocol.decode(line));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Ignoring malformed checkpoint record in " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+        if (records.size() < 2 || !records.get(0)[0].equals("CHECKPOINT") || !records.get(records.size() - 1)[0].equals("END")) {
+            System.out.println("Ignoring incomplete checkpoint " + file.getFileName());
+            return null;
+        }
+        return records;
+    }
+
+    private static void apply(String[] record) {
+        ItemList itemList = ItemList.getInstance();
+        switch (record[0]) {
+            case "USER":
+                requireFields(record, 4);
+                if (record[3].equals("ADMIN")) {
+                    UserList.getInstance().addUser(new Admin(record[1], record[2]));
+                } else {
+                    UserList.getInstance().addUser(new RegularUser(record[1], record[2]));
+                }
+                break;
+            case "ITEM":
+                requireFields(record, 4);
+                if (!itemList.updateItem(record[1], record[2], Double.parseDouble(record[3]))) {
+                    itemList.addItem(new Item(record[1], record[2], Double.parseDouble(record[3])));
+                }
+                break;
+            case "ITEM_REMOVE":
+                requireFields(record, 2);
+                itemList.removeItem(record[1]);
+                break;
+            case "CART": {
+                if (record.length < 2 || (record.length - 2) % 3 != 0) {
+                    throw new IllegalArgumentException("expected a username and id/name/price triples, got " + record.length + " field(s)");
+                }
+                User user = UserList.getInstance().getUser(record[1]);
+                if (user instanceof RegularUser) {
+                    List<Item> items = new ArrayList<>();
+                    for (int i = 2; i + 2 < record.length; i += 3) {
+                        items.add(new Item(record[i], record[i + 1], Double.parseDouble(record[i + 2])));
+                    }
+                    itemList.restoreCart((RegularUser) user, items);
+                }
+                break;
+            }
+            case "TXN":
+                if (record.length < 4 || (record.length - 4) % 3 != 0) {
+                    throw new IllegalArgumentException("expected id, total, payment and id/name/price triples, got " + record.length + " field(s)");
+                }
+                TransactionList.getInstance().addTransaction(ShopProtocol.parseTransaction(record, 1));
+                break;
+            default:
+                System.out.println("Ignoring unknown checkpoint record: " + record[0]);
+                break;
+        }
+    }
+
+    private static void requireFields(String[] record, int count) {
+        if (record.length != count) {
+            throw new IllegalArgumentException("expected " + count + " field(s), got " + record.length);
+        }
+    }
+}
+/**
+ * Kelas yang menyimpan indeks "sering dibeli bersama" dari seluruh transaksi.
+ * ID item dipetakan ke nomor int, jumlah kemunculan bersama disimpan dalam map
+ * int-ke-int open addressing per item, dan daftar top-K setiap item diperbarui
+ * langsung setiap kali transaksi baru ditambahkan.
+ */
+class RecommendationIndex implements TransactionListener {
+    private static final int TOP_K = 5;
+    private static RecommendationIndex instance = new RecommendationIndex();
+    private final Map<String, Integer> indexById;
+    private final List<String> idByIndex;
+    private final List<IntIntMap> coCounts;
+    private final List<int[]> topItems;
+    private final List<int[]> topCounts;
+
+    private RecommendationIndex() {
+        indexById = new HashMap<>();
+        idByIndex = new ArrayList<>();
+        coCounts = new ArrayList<>();
+        topItems = new ArrayList<>();
+        topCounts = new ArrayList<>();
+    }
+/**
+     * Mengembalikan instance tunggal dari kelas RecommendationIndex (Singleton).
+     *
+     * @return Instance tunggal dari kelas RecommendationIndex.
+     */
+    public static RecommendationIndex getInstance() {
+        return instance;
+    }
+/**
+     * Mendapatkan ID item yang paling sering dibeli bersama item tertentu.
+     *
+     * @param itemId ID item acuan.
+     * @return Paling banyak TOP_K ID item, diurutkan dari yang paling sering.
+     */
+    public synchronized List<String> getRecommendations(String itemId) {
+        Integer index = indexById.get(itemId);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        int[] items = topItems.get(index);
+        int[] counts = topCounts.get(index);
+        List<String> result = new ArrayList<>(TOP_K);
+        for (int i = 0; i < TOP_K && counts[i] > 0; i++) {
+            result.add(idByIndex.get(items[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void transactionAdded(Transaction transaction) {
+        int[] items = new int[transaction.getItems().size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = indexOf(transaction.getItems().get(i).getId());
+        }
+        Arrays.sort(items);
+
+        int distinct = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (i == 0 || items[i] != items[i - 1]) {
+                items[distinct++] = items[i];
+            }
+        }
+        for (int i = 0; i < distinct; i++) {
+            for (int j = i + 1; j < distinct; j++) {
+                increment(items[i], items[j]);
+                increment(items[j], items[i]);
+            }
+        }
+    }
+
+    private int indexOf(String itemId) {
+        Integer index = indexById.get(itemId);
+        if (index != null) {
+            return index;
+        }
+        int newIndex = idByIndex.size();
+        indexById.put(itemId, newIndex);
+        idByIndex.add(itemId);
+        coCounts.add(new IntIntMap());
+        topItems.add(new int[TOP_K]);
+        topCounts.add(new int[TOP_K]);
+        return newIndex;
+    }
+/**
+     * Menambah jumlah kemunculan bersama lalu memperbarui top-K item tersebut.
+     * Karena jumlah hanya bertambah, cukup membandingkan dengan entri terkecil di top-K.
+     */
+    private void increment(int item, int other) {
+        int count = coCounts.get(item).increment(other);
+        int[] items = topItems.get(item);
+        int[] counts = topCounts.get(item);
+
+        int position = -1;
+        for (int i = 0; i < TOP_K; i++) {
+            if (counts[i] > 0 && items[i] == other) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (count <= counts[TOP_K - 1]) {
+                return;
+            }
+            position = TOP_K - 1;
+            items[position] = other;
+        }
+        counts[position] = count;
+        while (position > 0 && counts[position - 1] < counts[position]) {
+            int swapItem = items[position - 1];
+            int swapCount = counts[position - 1];
+            items[position - 1] = items[position];
+            counts[position - 1] = counts[position];
+            items[position] = swapItem;
+            counts[position] = swapCount;
+            position--;
+        }
+    }
+/**
+     * Map int-ke-int dengan open addressing (linear probing) tanpa objek per entri.
+     */
+    private static class IntIntMap {
+        private int[] keys = new int[8];
+        private int[] values = new int[8];
+        private int size;
+
+        int increment(int key) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+            int slot = find(keys, key + 1);
+            if (keys[slot] == 0) {
+                keys[slot] = key + 1;
+                size++;
+            }
+            return ++values[slot];
+        }
+
+        private static int find(int[] keys, int storedKey) {
+            int mask = keys.length - 1;
+            int hash = storedKey * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != 0 && keys[slot] != storedKey) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}